@@ -0,0 +1,52 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+// the exact solver is exponential on shared cells, so it runs on smaller models than the other deletion benchmarks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BranchAndBoundBenchmark {
+    @Param({"TREE", "DAG", "WIDE", "DEEP"})
+    SyntheticModels.Shape shape;
+
+    @Param({"25", "50", "100"})
+    int size;
+
+    @Param({"10"})
+    int batchSize;
+
+    InstantiatedModel model;
+    Cell deleted;
+    InstantiatedModel batchModel;
+    ArrayList<Cell> batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        ConfigParameter.measureMemory = false;
+        var models = new SyntheticModels(shape, size, 42L);
+        model = models.model();
+        deleted = models.cells.get(0);
+        batch = models.batch(batchSize, 42L);
+        batchModel = models.batchModel(batch);
+    }
+
+    @Benchmark
+    public HashSet<Cell> branchAndBoundDelete() {
+        return Main.branchAndBoundDelete(model, deleted);
+    }
+
+    @Benchmark
+    public HashSet<Cell> batchedBranchAndBoundDelete() {
+        return Main.batchedBranchAndBoundDelete(batchModel, batch);
+    }
+}
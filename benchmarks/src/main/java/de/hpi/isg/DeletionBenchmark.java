@@ -0,0 +1,90 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+// throughput of the deletion algorithms on synthetic models, the models are built once per trial
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeletionBenchmark {
+    @Param({"TREE", "DAG", "WIDE", "DEEP"})
+    SyntheticModels.Shape shape;
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    @Param({"10"})
+    int batchSize;
+
+    InstantiatedModel model;
+    Cell deleted;
+    InstantiatedModel batchModel;
+    ArrayList<Cell> batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        // memory estimates walk the closure a second time and would be measured as well
+        ConfigParameter.measureMemory = false;
+        var models = new SyntheticModels(shape, size, 42L);
+        model = models.model();
+        deleted = models.cells.get(0);
+        batch = models.batch(batchSize, 42L);
+        batchModel = models.batchModel(batch);
+    }
+
+    @Benchmark
+    public HashSet<Cell> optimalDelete() {
+        return Main.optimalDelete(model, deleted);
+    }
+
+    @Benchmark
+    public HashSet<Cell> approximateDelete() {
+        return Main.approximateDelete(model, deleted);
+    }
+
+    @Benchmark
+    public HashSet<Cell> lpRoundingDelete() {
+        return Main.lpRoundingDelete(model, deleted);
+    }
+
+    @Benchmark
+    public HashSet<Cell> batchedOptimalDelete() {
+        return Main.batchedOptimalDelete(batchModel, batch);
+    }
+
+    @Benchmark
+    public HashSet<Cell> batchedApproximateDelete() throws Exception {
+        return Main.batchedApproximateDelete(batchModel, batch);
+    }
+
+    @Benchmark
+    public HashSet<Cell> batchedLpRoundingDelete() {
+        return Main.batchedLpRoundingDelete(batchModel, batch);
+    }
+
+    // runs all benchmarks of the module with the allocation profiler, arguments are regular JMH include patterns
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        // the ilp benchmark needs a gurobi licence and only runs when it is named
+        if (args.length == 0) {
+            options.include("de.hpi.isg.*Benchmark").exclude("de.hpi.isg.IlpBenchmark");
+        }
+        for (var include : args) {
+            options.include(include);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,60 @@
+package de.hpi.isg;
+
+import com.gurobi.gurobi.GRBException;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+// the ILP paths need a Gurobi licence, so they are kept apart from the other deletion benchmarks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IlpBenchmark {
+    @Param({"TREE", "DAG", "WIDE", "DEEP"})
+    SyntheticModels.Shape shape;
+
+    @Param({"100", "1000"})
+    int size;
+
+    @Param({"10"})
+    int batchSize;
+
+    InstantiatedModel model;
+    Cell deleted;
+    InstantiatedModel batchModel;
+    ArrayList<Cell> batch;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, GRBException {
+        ConfigParameter.measureMemory = false;
+        Main.env = Main.createEnv();
+        var models = new SyntheticModels(shape, size, 42L);
+        model = models.model();
+        deleted = models.cells.get(0);
+        batch = models.batch(batchSize, 42L);
+        batchModel = models.batchModel(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws GRBException {
+        Main.env.dispose();
+        Main.env = null;
+    }
+
+    @Benchmark
+    public HashSet<Cell> ilpApproach() throws GRBException {
+        return Main.ilpApproach(model, deleted);
+    }
+
+    @Benchmark
+    public HashSet<Cell> batchedIlpApproach() throws GRBException {
+        return Main.batchedIlpApproach(batchModel, batch);
+    }
+}
@@ -0,0 +1,131 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+
+import java.sql.SQLException;
+import java.util.*;
+
+// seeded in memory hypergraphs, so that the deletion algorithms can be measured without a database
+public class SyntheticModels {
+    public enum Shape {
+        // every cell is reached by exactly one edge
+        TREE,
+        // members are drawn from the next cells, so cells are shared by several edges
+        DAG,
+        // many large edges per cell over a wide window, few levels
+        WIDE,
+        // few small edges over a narrow window, long chains
+        DEEP
+    }
+
+    private static final Attribute[] ATTRIBUTES = {
+            new Attribute("synthetic", "a"),
+            new Attribute("synthetic", "b"),
+            new Attribute("synthetic", "c"),
+            new Attribute("synthetic", "d")
+    };
+
+    final ArrayList<Cell> cells;
+    final HashMap<Cell, ArrayList<HyperEdge>> cell2Edge = new HashMap<>();
+    final Instatiator instatiator = new SyntheticInstatiator();
+
+    public SyntheticModels(Shape shape, int size, long seed) {
+        var random = new Random(seed);
+        cells = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            var cell = new Cell(ATTRIBUTES[i % ATTRIBUTES.length], String.valueOf(i), "v" + i);
+            cell.insertionTime = i;
+            cells.add(cell);
+        }
+
+        int nextChild = 1;
+        for (int i = 0; i < size; i++) {
+            var edges = new ArrayList<HyperEdge>();
+            switch (shape) {
+                case TREE:
+                    for (int edgeIdx = random.nextInt(3); edgeIdx >= 0 && nextChild < size; edgeIdx--) {
+                        var edge = new HyperEdge(3);
+                        for (int memberIdx = random.nextInt(3); memberIdx >= 0 && nextChild < size; memberIdx--) {
+                            edge.add(cells.get(nextChild++));
+                        }
+                        edges.add(edge);
+                    }
+                    break;
+                case DAG:
+                    addRandomEdges(edges, random, i, 1 + random.nextInt(3), 3, 16);
+                    break;
+                case WIDE:
+                    addRandomEdges(edges, random, i, 4 + random.nextInt(5), 6, Math.max(1, size / 4));
+                    break;
+                case DEEP:
+                    addRandomEdges(edges, random, i, 1 + random.nextInt(2), 2, 3);
+                    break;
+            }
+            if (!edges.isEmpty()) {
+                cell2Edge.put(cells.get(i), edges);
+            }
+        }
+    }
+
+    private void addRandomEdges(ArrayList<HyperEdge> edges, Random random, int cellIdx, int numEdges, int maxMembers, int window) {
+        var candidates = Math.min(window, cells.size() - cellIdx - 1);
+        if (candidates <= 0) {
+            return;
+        }
+        for (int edgeIdx = 0; edgeIdx < numEdges; edgeIdx++) {
+            var edge = new HyperEdge(maxMembers);
+            for (int memberIdx = 1 + random.nextInt(maxMembers); memberIdx > 0; memberIdx--) {
+                edge.add(cells.get(cellIdx + 1 + random.nextInt(candidates)));
+            }
+            edges.add(edge);
+        }
+    }
+
+    // the closure of the first cell
+    public InstantiatedModel model() throws SQLException {
+        return new InstantiatedModel(cells.get(0), instatiator);
+    }
+
+    // batchSize distinct cells from the first half, so that their closures overlap
+    public ArrayList<Cell> batch(int batchSize, long seed) {
+        var random = new Random(seed);
+        var batch = new LinkedHashSet<Cell>();
+        var candidates = Math.max(1, cells.size() / 2);
+        while (batch.size() < Math.min(batchSize, candidates)) {
+            batch.add(cells.get(random.nextInt(candidates)));
+        }
+        return new ArrayList<>(batch);
+    }
+
+    public InstantiatedModel batchModel(ArrayList<Cell> batch) throws SQLException {
+        return new InstantiatedModel(batch, instatiator);
+    }
+
+    private class SyntheticInstatiator extends Instatiator {
+        // InstantiatedModel rewrites the edges it receives, so every call hands out copies
+        @Override
+        public ArrayList<HyperEdge> instantiateAttachedCells(Cell start, long sourceInsertionTime) {
+            var edges = cell2Edge.get(start);
+            var result = new ArrayList<HyperEdge>(edges == null ? 0 : edges.size());
+            if (edges != null) {
+                for (var edge : edges) {
+                    var copy = new HyperEdge(edge.size());
+                    copy.addAll(edge);
+                    result.add(copy);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public HashMap<Cell, ArrayList<HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) {
+            var result = new HashMap<Cell, ArrayList<HyperEdge>>(cells.size());
+            for (var cell : cells) {
+                result.put(cell, instantiateAttachedCells(cell, sourceInsertionTime));
+            }
+            return result;
+        }
+    }
+}
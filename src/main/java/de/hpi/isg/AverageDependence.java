@@ -2,10 +2,12 @@ package de.hpi.isg;
 
 import de.hpi.isg.RelationalDependencyRules.Attribute;
 import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
 import de.hpi.isg.RelationalDependencyRules.Rule;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static de.hpi.isg.InstantiatedModel.containsParent;
 
@@ -18,17 +20,25 @@ public class AverageDependence {
         for (var attr : allAttributes) {
             var keys = instantiator.getKeys(attr);
             System.out.print(attr + ",");
+            var attrCells = new ArrayList<Cell>(keys.size());
             for (var key : keys) {
-                var deletionCell = new Cell(attr, key);
-                instantiator.completeCell(deletionCell);
-                deletionCells.add(deletionCell);
+                attrCells.add(new Cell(attr, key));
             }
+            instantiator.completeCells(attrCells);
+            deletionCells.addAll(attrCells);
             System.out.println(String.join(",", keys));
             attr2Keys.put(attr, keys);
         }
         System.out.println(deletionCells.size());
 
-        HashMap<Cell, HashMap<Rule, ArrayList<Cell.HyperEdge>>> cell2Rule2InstantiationCache = new HashMap<>();
+        if (ConfigParameter.maskRuleSubsets) {
+            maskRuleSubsets(instantiator, deletionCells, allRules);
+            instantiator.c.close();
+            return;
+        }
+
+        // unbounded unless a size is configured, every rule subset reuses the instantiations of the earlier ones
+        var instantiationCache = new InstantiationCache(allRules, ConfigParameter.instantiationCacheSize > 0 ? ConfigParameter.instantiationCacheSize : Long.MAX_VALUE);
 
         System.out.println("Index,Size,InstantiatedCells,DeletionCount");
 
@@ -42,7 +52,7 @@ public class AverageDependence {
                 }
             }
 
-            var cachingInstantiator = new CachingInstantiator(currentRuleSet, cell2Rule2InstantiationCache, attributeInHead, attributeInTail, tableName2keyCol);
+            var cachingInstantiator = new CachingInstantiator(currentRuleSet, instantiationCache, attributeInHead, attributeInTail, tableName2keyCol);
             for (var deleted : deletionCells) {
                 var currModel = new InstantiatedModel(deleted, cachingInstantiator);
                 var toDelete = Main.optimalDelete(currModel, deleted);
@@ -54,33 +64,209 @@ public class AverageDependence {
         }
     }
 
+    // instantiates the closures of the deleted cells once under all rules and evaluates every rule subset in memory,
+    // the closure under a subset is part of the closure under all rules, as both use the insertion time of the deleted cell
+    static void maskRuleSubsets(Instatiator instantiator, ArrayList<Cell> deletionCells, ArrayList<Rule> allRules) throws SQLException {
+        int n = allRules.size();
+        if (n >= Integer.SIZE - 1) {
+            throw new SQLException("Too many rules for all subsets: " + n);
+        }
+        var rule2Bit = new HashMap<Rule, Long>(n);
+        for (int j = 0; j < n; j++) {
+            rule2Bit.put(allRules.get(j), 1L << j);
+        }
+        var start = System.nanoTime();
+        var cell2Edges = instantiateClosures(instantiator, deletionCells, rule2Bit);
+        System.out.println("instantiated " + cell2Edges.size() + " cells in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        System.out.println("Index,Size,InstantiatedCells,DeletionCount");
+
+        // subset i holds rule j if bit j of i is set, which is the bit of rule j on the edges
+        var rows = new String[1 << n];
+        try {
+            IntStream.range(0, 1 << n).parallel().forEach(i -> {
+                var maskedInstantiator = new MaskedInstantiator(cell2Edges, i);
+                int instantiatedCells = 0, deletedCells = 0;
+                for (var deleted : deletionCells) {
+                    try {
+                        var currModel = new InstantiatedModel(deleted, maskedInstantiator);
+                        var toDelete = Main.optimalDelete(currModel, deleted);
+                        instantiatedCells += currModel.instantiationTime.size() - 1;
+                        deletedCells += toDelete.size() - 1;
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                rows[i] = i + "," + Integer.bitCount(i) + "," + instantiatedCells + "," + deletedCells;
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+        for (var row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    // raw edges of a cell with the bit of the rule that instantiates them, in the order of the rules
+    // an edge that several rules or several rows of one rule instantiate is kept once per occurrence,
+    // so the edges of a subset are exactly the edges that its own instantiation returns
+    static final class TaggedEdges {
+        final HyperEdge[] rawEdges;
+        final long[] masks;
+
+        TaggedEdges(ArrayList<HyperEdge> rawEdges, ArrayList<Long> masks) {
+            this.rawEdges = rawEdges.toArray(new HyperEdge[0]);
+            this.masks = new long[masks.size()];
+            for (int i = 0; i < this.masks.length; i++) {
+                this.masks[i] = masks.get(i);
+            }
+        }
+    }
+
+    // every cell that is reachable from a deleted cell under all rules, queried level by level with one query per rule and chunk
+    static HashMap<Cell, TaggedEdges> instantiateClosures(Instatiator instantiator, ArrayList<Cell> deletionCells, HashMap<Rule, Long> rule2Bit) throws SQLException {
+        var cell2Edges = new HashMap<Cell, TaggedEdges>();
+        for (var deleted : deletionCells) {
+            var visited = new HashSet<Cell>();
+            visited.add(deleted);
+            var currLevel = new ArrayList<Cell>();
+            currLevel.add(deleted);
+            while (!currLevel.isEmpty()) {
+                var missing = new ArrayList<Cell>();
+                for (var cell : currLevel) {
+                    if (!cell2Edges.containsKey(cell)) {
+                        missing.add(cell);
+                    }
+                }
+                for (var chunk : Instatiator.chunkByAttribute(missing, ConfigParameter.instantiationBatchSize)) {
+                    instantiateChunk(instantiator, chunk, rule2Bit, cell2Edges);
+                }
+                var nextLevel = new ArrayList<Cell>();
+                for (var cell : currLevel) {
+                    for (var rawEdge : cell2Edges.get(cell).rawEdges) {
+                        var edge = DependencyGraphCache.filterEdge(rawEdge, deleted.insertionTime);
+                        if (edge == null) {
+                            continue;
+                        }
+                        for (var member : edge) {
+                            if (visited.add(member)) {
+                                nextLevel.add(member);
+                            }
+                        }
+                    }
+                }
+                currLevel = nextLevel;
+            }
+        }
+        return cell2Edges;
+    }
+
+    // raw edges for every source insertion time, so that they serve all deleted cells
+    private static void instantiateChunk(Instatiator instantiator, Instatiator.KeyChunk chunk, HashMap<Rule, Long> rule2Bit, HashMap<Cell, TaggedEdges> cell2Edges) throws SQLException {
+        var key2First = new HashMap<String, ArrayList<Cell>>(chunk.keys.size());
+        var cell2RawEdges = new HashMap<Cell, ArrayList<HyperEdge>>(chunk.keys.size());
+        var cell2Masks = new HashMap<Cell, ArrayList<Long>>(chunk.keys.size());
+        for (var key : chunk.keys) {
+            var first = chunk.key2Cells.get(key).get(0);
+            key2First.put(key, new ArrayList<>(List.of(first)));
+            cell2RawEdges.put(first, new ArrayList<>());
+            cell2Masks.put(first, new ArrayList<>());
+        }
+        for (var connectedRules : List.of(instantiator.attributeInHead, instantiator.attributeInTail)) {
+            for (var rule : connectedRules.getOrDefault(chunk.attribute, instantiator.EMPTY_LIST)) {
+                var rawResult = new HashMap<Cell, ArrayList<HyperEdge>>(chunk.keys.size());
+                for (var first : cell2RawEdges.keySet()) {
+                    rawResult.put(first, new ArrayList<>());
+                }
+                instantiator.instantiateRule(rule, chunk.attribute, chunk.keys, key2First, Long.MIN_VALUE, rawResult, true);
+                var bit = rule2Bit.get(rule);
+                for (var entry : rawResult.entrySet()) {
+                    cell2RawEdges.get(entry.getKey()).addAll(entry.getValue());
+                    var masks = cell2Masks.get(entry.getKey());
+                    for (int i = 0; i < entry.getValue().size(); i++) {
+                        masks.add(bit);
+                    }
+                }
+            }
+        }
+        for (var key : chunk.keys) {
+            var cells = chunk.key2Cells.get(key);
+            var tagged = new TaggedEdges(cell2RawEdges.get(cells.get(0)), cell2Masks.get(cells.get(0)));
+            for (var cell : cells) {
+                cell2Edges.put(cell, tagged);
+            }
+        }
+    }
+
+    // answers from the closures under all rules, with the edges of the rules of its subset
+    static class MaskedInstantiator extends Instatiator {
+        final HashMap<Cell, TaggedEdges> cell2Edges;
+        final long ruleMask;
+
+        MaskedInstantiator(HashMap<Cell, TaggedEdges> cell2Edges, long ruleMask) {
+            this.cell2Edges = cell2Edges;
+            this.ruleMask = ruleMask;
+        }
+
+        @Override
+        public ArrayList<HyperEdge> instantiateAttachedCells(Cell start, long sourceInsertionTime) throws SQLException {
+            var tagged = cell2Edges.get(start);
+            if (tagged == null) {
+                throw new SQLException("Cell " + start + " is not part of a closure under all rules");
+            }
+            var result = new ArrayList<HyperEdge>();
+            for (int i = 0; i < tagged.rawEdges.length; i++) {
+                if ((tagged.masks[i] & ruleMask) != 0) {
+                    var edge = DependencyGraphCache.filterEdge(tagged.rawEdges[i], sourceInsertionTime);
+                    if (edge != null) {
+                        result.add(edge);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public HashMap<Cell, ArrayList<HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) throws SQLException {
+            var result = new HashMap<Cell, ArrayList<HyperEdge>>(cells.size());
+            for (var cell : cells) {
+                result.put(cell, instantiateAttachedCells(cell, sourceInsertionTime));
+            }
+            return result;
+        }
+    }
+
     static class CachingInstantiator extends Instatiator {
         HashSet<Rule> currentRules;
-        HashMap<Cell, HashMap<Rule, ArrayList<Cell.HyperEdge>>> cell2Rule2InstantiationCache;
 
-        public CachingInstantiator(HashSet<Rule> currentRules, HashMap<Cell, HashMap<Rule, ArrayList<Cell.HyperEdge>>> cell2Rule2InstantiationCache, HashMap<Attribute, ArrayList<Rule>> attributeInHead, HashMap<Attribute, ArrayList<Rule>> attributeInTail, HashMap<String, String> tableName2keyCol) throws SQLException {
+        public CachingInstantiator(HashSet<Rule> currentRules, InstantiationCache instantiationCache, HashMap<Attribute, ArrayList<Rule>> attributeInHead, HashMap<Attribute, ArrayList<Rule>> attributeInTail, HashMap<String, String> tableName2keyCol) throws SQLException {
             super(attributeInHead, attributeInTail, tableName2keyCol);
             this.currentRules = currentRules;
-            this.cell2Rule2InstantiationCache = cell2Rule2InstantiationCache;
+            useInstantiationCache(instantiationCache);
         }
 
         @Override
         public void iterateRules(Cell start, long sourceInsertionTime, ArrayList<Cell.HyperEdge> result, HashMap<Attribute, ArrayList<Rule>> connectedRules) throws SQLException {
             for (var rule : connectedRules.getOrDefault(start.attribute, EMPTY_LIST)) {
                 if (currentRules.contains(rule)) {
-                    var cellCache = cell2Rule2InstantiationCache.computeIfAbsent(start, k -> new HashMap<>());
-                    var ruleResult = cellCache.get(rule);
-                    if (ruleResult == null) {
-                        try (var rs = queryRule(rule, start, sourceInsertionTime)) {
-                            ruleResult = resultSetToCellList(rule, start, rs, sourceInsertionTime);
-                            cellCache.put(rule, ruleResult);
-                        }
-                    }
-                    result.addAll(ruleResult);
+                    instantiateCachedRule(rule, start, sourceInsertionTime, result);
                 }
             }
         }
 
+        @Override
+        public HashMap<Cell, ArrayList<Cell.HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) throws SQLException {
+            // the cache is filled per cell, so instantiate cell by cell
+            var result = new HashMap<Cell, ArrayList<Cell.HyperEdge>>(cells.size());
+            for (var cell : cells) {
+                result.put(cell, instantiateAttachedCells(cell, sourceInsertionTime));
+            }
+            return result;
+        }
+
         public void closeConnection() throws SQLException {
             c.commit();
             c.close();
@@ -0,0 +1,256 @@
+package de.hpi.isg;
+
+import java.util.Arrays;
+
+// exact minimum deletion over a CompactHypergraph without an external solver
+// branches on the members of an edge that is not hit yet, the first branch takes a member and every later branch forbids the members tried before
+final class BranchAndBound {
+    private static final int INFEASIBLE = Integer.MAX_VALUE / 2;
+    private static final int FEASIBLE = -1;
+    private static final int PRUNED = -2;
+
+    private final CompactHypergraph graph;
+    // reachable cells, every cell after all members of its edges
+    private final int[] order;
+    private int orderSize = 0;
+    // edges in which a cell is a member are occurrences[occurrenceStart[c]] until occurrences[occurrenceStart[c + 1]]
+    private final int[] occurrenceStart;
+    private final int[] occurrences;
+    private boolean isTree = true;
+
+    private final boolean[] chosen;
+    private final boolean[] forbidden;
+    // number of chosen members per edge
+    private final int[] hits;
+    // lower bound on the cells that have to be added besides the chosen ones once a cell is deleted
+    private final int[] residual;
+    private final int[] chosenCells;
+    private int numChosen = 0;
+    // chosen cells are stored as id, forbidden cells as -id - 1
+    private final int[] trail;
+    private int trailSize = 0;
+    private final CompactHypergraph.Marks packed = new CompactHypergraph.Marks();
+
+    private int[] best;
+    private int bestSize;
+    long nodes = 0;
+
+    private BranchAndBound(CompactHypergraph graph, int[] roots) {
+        this.graph = graph;
+        var numCells = graph.numCells();
+        order = new int[numCells];
+        chosen = new boolean[numCells];
+        forbidden = new boolean[numCells];
+        hits = new int[graph.numEdges()];
+        residual = new int[numCells];
+        chosenCells = new int[numCells];
+        trail = new int[numCells];
+
+        orderSize = graph.postOrder(roots, order);
+
+        occurrenceStart = new int[numCells + 1];
+        for (int i = 0; i < orderSize; i++) {
+            var cell = order[i];
+            for (int j = graph.memberStart[graph.edgeStart[cell]]; j < graph.memberStart[graph.edgeStart[cell + 1]]; j++) {
+                occurrenceStart[graph.members[j] + 1]++;
+            }
+        }
+        for (var root : roots) {
+            // a deleted cell that is a member of another edge makes the tree dp prefer other cells
+            isTree &= occurrenceStart[root + 1] == 0;
+        }
+        for (int cell = 0; cell < numCells; cell++) {
+            isTree &= occurrenceStart[cell + 1] <= 1;
+            occurrenceStart[cell + 1] += occurrenceStart[cell];
+        }
+        occurrences = new int[occurrenceStart[numCells]];
+        var fill = Arrays.copyOf(occurrenceStart, numCells);
+        for (int i = 0; i < orderSize; i++) {
+            var cell = order[i];
+            for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    occurrences[fill[graph.members[j]]++] = edge;
+                }
+            }
+        }
+    }
+
+    static int[] solve(CompactHypergraph graph, int[] roots) {
+        var solver = new BranchAndBound(graph, roots);
+        for (var root : roots) {
+            if (!solver.chosen[root]) {
+                solver.choose(root);
+            }
+        }
+        solver.best = graph.treeDpSelection(solver.order, solver.orderSize, roots);
+        solver.bestSize = solver.best.length;
+        // without shared cells the tree dp is already exact
+        if (!solver.isTree) {
+            solver.search();
+        }
+        return solver.best;
+    }
+
+    private void search() {
+        var numCells = graph.numCells();
+        var frameBase = new int[numCells + 1];
+        var frameMark = new int[numCells + 1];
+        var frameStart = new int[numCells + 1];
+        var frameNext = new int[numCells + 1];
+        var frameEnd = new int[numCells + 1];
+        var branchMembers = new int[16];
+        int branchSize = 0;
+        int depth = 0;
+        boolean enter = true;
+
+        while (true) {
+            if (enter) {
+                nodes++;
+                var edge = evaluate();
+                if (edge == FEASIBLE) {
+                    best = Arrays.copyOf(chosenCells, numChosen);
+                    bestSize = numChosen;
+                } else if (edge >= 0) {
+                    var width = graph.memberStart[edge + 1] - graph.memberStart[edge];
+                    if (branchMembers.length < branchSize + width) {
+                        branchMembers = Arrays.copyOf(branchMembers, Math.max(branchSize + width, branchMembers.length * 2));
+                    }
+                    frameStart[depth] = branchSize;
+                    // members with the smallest residual first, they lead to good incumbents early
+                    for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+                        var member = graph.members[i];
+                        if (residual[member] >= INFEASIBLE) {
+                            continue;
+                        }
+                        int pos = branchSize++;
+                        while (pos > frameStart[depth] && residual[branchMembers[pos - 1]] > residual[member]) {
+                            branchMembers[pos] = branchMembers[pos - 1];
+                            pos--;
+                        }
+                        branchMembers[pos] = member;
+                    }
+                    frameEnd[depth] = branchSize;
+                    frameNext[depth] = frameStart[depth];
+                    frameBase[depth] = trailSize;
+                    frameMark[depth] = trailSize;
+                    depth++;
+                }
+            }
+            if (depth == 0) {
+                return;
+            }
+
+            var frame = depth - 1;
+            undo(frameMark[frame]);
+            if (frameNext[frame] > frameStart[frame]) {
+                forbid(branchMembers[frameNext[frame] - 1]);
+                frameMark[frame] = trailSize;
+            }
+            if (frameNext[frame] < frameEnd[frame]) {
+                choose(branchMembers[frameNext[frame]++]);
+                enter = true;
+            } else {
+                undo(frameBase[frame]);
+                branchSize = frameStart[frame];
+                depth--;
+                enter = false;
+            }
+        }
+    }
+
+    // returns the edge to branch on, FEASIBLE if every chosen cell is covered or PRUNED if the node cannot beat the incumbent
+    private int evaluate() {
+        for (int i = 0; i < orderSize; i++) {
+            var cell = order[i];
+            if (chosen[cell]) {
+                residual[cell] = 0;
+            } else if (forbidden[cell]) {
+                residual[cell] = INFEASIBLE;
+            } else {
+                // the longest chain of cells that have to be added, chains of different edges may share cells
+                int cellResidual = 1;
+                for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1] && cellResidual < INFEASIBLE; edge++) {
+                    cellResidual = Math.max(cellResidual, 1 + minResidual(edge));
+                }
+                residual[cell] = Math.min(cellResidual, INFEASIBLE);
+            }
+        }
+
+        packed.reset(graph.numCells());
+        int packing = 0, chain = 0;
+        int branchEdge = FEASIBLE, branchWidth = Integer.MAX_VALUE;
+        for (int i = 0; i < numChosen; i++) {
+            var cell = chosenCells[i];
+            for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                if (hits[edge] > 0) {
+                    continue;
+                }
+                int width = 0;
+                boolean isDisjoint = true;
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    var member = graph.members[j];
+                    if (residual[member] < INFEASIBLE) {
+                        width++;
+                    }
+                    isDisjoint &= !packed.isMarked(member);
+                }
+                if (width == 0) {
+                    return PRUNED;
+                }
+                chain = Math.max(chain, minResidual(edge));
+                // edges without common members need one new cell each
+                if (isDisjoint) {
+                    packing++;
+                    for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                        packed.mark(graph.members[j]);
+                    }
+                }
+                if (width < branchWidth) {
+                    branchEdge = edge;
+                    branchWidth = width;
+                }
+            }
+        }
+        if (numChosen + Math.max(packing, chain) >= bestSize) {
+            return PRUNED;
+        }
+        return branchEdge;
+    }
+
+    private int minResidual(int edge) {
+        int min = INFEASIBLE;
+        for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+            min = Math.min(min, residual[graph.members[i]]);
+        }
+        return min;
+    }
+
+    private void choose(int cell) {
+        chosen[cell] = true;
+        chosenCells[numChosen++] = cell;
+        for (int i = occurrenceStart[cell]; i < occurrenceStart[cell + 1]; i++) {
+            hits[occurrences[i]]++;
+        }
+        trail[trailSize++] = cell;
+    }
+
+    private void forbid(int cell) {
+        forbidden[cell] = true;
+        trail[trailSize++] = -cell - 1;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            var entry = trail[--trailSize];
+            if (entry < 0) {
+                forbidden[-entry - 1] = false;
+            } else {
+                chosen[entry] = false;
+                numChosen--;
+                for (int i = occurrenceStart[entry]; i < occurrenceStart[entry + 1]; i++) {
+                    hits[occurrences[i]]--;
+                }
+            }
+        }
+    }
+}
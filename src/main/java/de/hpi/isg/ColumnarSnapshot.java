@@ -0,0 +1,241 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// the columns used by the rules, loaded once from the database
+// values are dictionary codes into one shared dictionary, so that equality is a comparison of ints and joins hash ints
+final class ColumnarSnapshot {
+    static final int NULL = -1;
+    // how the values of a column compare in sql, integer columns have one string per value, so equal values share a code
+    static final int TEXT = 0;
+    static final int INTEGER = 1;
+    static final int DECIMAL = 2;
+    static final int OTHER = 3;
+    private static final Pattern QUALIFIED_COLUMN = Pattern.compile("(\\w+)\\.(\\w+)");
+
+    static final class Table {
+        final String name;
+        int rows = 0;
+        String[] keys = new String[16];
+        final HashMap<String, Integer> key2Row = new HashMap<>();
+        final LinkedHashMap<String, int[]> columns = new LinkedHashMap<>();
+        final LinkedHashMap<String, long[]> insertionTimes = new LinkedHashMap<>();
+        // column -> TEXT, INTEGER, DECIMAL or OTHER
+        final HashMap<String, Integer> kinds = new HashMap<>();
+        // column -> code -> rows, built on the first join over the column
+        private final HashMap<String, HashMap<Integer, int[]>> indexes = new HashMap<>();
+
+        Table(String name) {
+            this.name = name;
+        }
+
+        int row(String key) {
+            var row = key2Row.get(key);
+            return row == null ? -1 : row;
+        }
+
+        int[] rowsWith(String column, int code) {
+            var index = indexes.get(column);
+            if (index == null) {
+                index = buildIndex(columns.get(column));
+                indexes.put(column, index);
+            }
+            return index.get(code);
+        }
+
+        private HashMap<Integer, int[]> buildIndex(int[] codes) {
+            var counts = new HashMap<Integer, Integer>();
+            for (int row = 0; row < rows; row++) {
+                if (codes[row] != NULL) {
+                    counts.merge(codes[row], 1, Integer::sum);
+                }
+            }
+            var index = new HashMap<Integer, int[]>(counts.size() * 2);
+            for (var entry : counts.entrySet()) {
+                index.put(entry.getKey(), new int[entry.getValue()]);
+            }
+            var filled = new HashMap<Integer, Integer>(counts.size() * 2);
+            for (int row = 0; row < rows; row++) {
+                if (codes[row] != NULL) {
+                    var pos = filled.merge(codes[row], 1, Integer::sum) - 1;
+                    index.get(codes[row])[pos] = row;
+                }
+            }
+            return index;
+        }
+
+        private void grow() {
+            var capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            for (var entry : columns.entrySet()) {
+                entry.setValue(Arrays.copyOf(entry.getValue(), capacity));
+            }
+            for (var entry : insertionTimes.entrySet()) {
+                entry.setValue(Arrays.copyOf(entry.getValue(), capacity));
+            }
+        }
+    }
+
+    final HashMap<String, Table> tables = new HashMap<>();
+    private final HashMap<String, Integer> value2Code = new HashMap<>();
+    private final ArrayList<String> values = new ArrayList<>();
+    // numeric value of every code, NaN for values that are not numbers
+    private double[] numbers = new double[16];
+
+    int code(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        var code = value2Code.get(value);
+        if (code == null) {
+            code = values.size();
+            value2Code.put(value, code);
+            values.add(value);
+            if (code == numbers.length) {
+                numbers = Arrays.copyOf(numbers, code * 2);
+            }
+            numbers[code] = parseNumber(value);
+        }
+        return code;
+    }
+
+    // the code of a value that is not added to the dictionary, NULL if no column holds the value
+    int existingCode(String value) {
+        var code = value2Code.get(value);
+        return code == null ? NULL : code;
+    }
+
+    String value(int code) {
+        return code == NULL ? null : values.get(code);
+    }
+
+    double number(int code) {
+        return numbers[code];
+    }
+
+    static int kind(int sqlType) {
+        switch (sqlType) {
+            case Types.VARCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return TEXT;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return INTEGER;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DECIMAL;
+            default:
+                // padded chars, dates and the like compare by rules of their own
+                return OTHER;
+        }
+    }
+
+    static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static ColumnarSnapshot load(Connection c, Collection<Rule> rules, HashMap<String, String> tableName2keyCol) throws SQLException {
+        // table -> columns, and table -> columns with an insertion time
+        var table2Columns = new TreeMap<String, TreeSet<String>>();
+        var table2Timed = new TreeMap<String, TreeSet<String>>();
+        for (var rule : rules) {
+            for (var table : rule.tables) {
+                table2Columns.computeIfAbsent(table, t -> new TreeSet<>());
+                table2Timed.computeIfAbsent(table, t -> new TreeSet<>());
+            }
+            var attributes = new ArrayList<Attribute>(rule.tail);
+            attributes.add(rule.head);
+            for (var attribute : attributes) {
+                table2Columns.get(attribute.table).add(attribute.attribute);
+                table2Timed.get(attribute.table).add(attribute.attribute);
+            }
+            if (rule.condition != null) {
+                var matcher = QUALIFIED_COLUMN.matcher(rule.condition);
+                while (matcher.find()) {
+                    var table = rule.table2Alias.get(matcher.group(1));
+                    if (table != null && table2Columns.containsKey(table)) {
+                        table2Columns.get(table).add(matcher.group(2));
+                    }
+                }
+            }
+        }
+
+        var snapshot = new ColumnarSnapshot();
+        for (var entry : table2Columns.entrySet()) {
+            var table = new Table(entry.getKey());
+            var keyCol = tableName2keyCol.get(table.name);
+            var selected = new ArrayList<String>();
+            selected.add("a." + keyCol);
+            for (var column : entry.getValue()) {
+                table.columns.put(column, new int[table.keys.length]);
+                selected.add("a." + column);
+            }
+            for (var column : table2Timed.get(table.name)) {
+                table.insertionTimes.put(column, new long[table.keys.length]);
+                selected.add("b." + column);
+            }
+            try (var stmt = c.createStatement()) {
+                stmt.setFetchSize(10000);
+                try (var rs = stmt.executeQuery("SELECT " + String.join(", ", selected) + " FROM " + table.name + " a, " + table.name + Instatiator.IT_SUFFIX + " b WHERE a." + keyCol + " = b.insertionKey")) {
+                    int typeIdx = 2;
+                    for (var column : table.columns.keySet()) {
+                        table.kinds.put(column, kind(rs.getMetaData().getColumnType(typeIdx++)));
+                    }
+                    while (rs.next()) {
+                        if (table.rows == table.keys.length) {
+                            table.grow();
+                        }
+                        var row = table.rows++;
+                        int columnIdx = 1;
+                        table.keys[row] = rs.getString(columnIdx++);
+                        if (table.key2Row.put(table.keys[row], row) != null) {
+                            throw new SQLException("Non-unique key!");
+                        }
+                        for (var codes : table.columns.values()) {
+                            codes[row] = snapshot.code(rs.getString(columnIdx++));
+                        }
+                        for (var insertionTimes : table.insertionTimes.values()) {
+                            insertionTimes[row] = rs.getLong(columnIdx++);
+                        }
+                    }
+                }
+            }
+            snapshot.tables.put(table.name, table);
+        }
+        return snapshot;
+    }
+
+    // keeps the snapshot in line with erased and restored cells
+    void update(Cell cell, String value) {
+        var table = tables.get(cell.attribute.table);
+        if (table == null) {
+            return;
+        }
+        var codes = table.columns.get(cell.attribute.attribute);
+        var row = table.row(cell.key);
+        if (codes == null || row < 0) {
+            return;
+        }
+        codes[row] = code(value);
+        table.indexes.remove(cell.attribute.attribute);
+    }
+}
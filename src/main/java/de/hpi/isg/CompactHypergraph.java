@@ -0,0 +1,337 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+
+import java.util.*;
+
+// compressed sparse row copy of an InstantiatedModel over dense cell ids
+public class CompactHypergraph {
+    final Cell[] cells;
+    final HashMap<Cell, Integer> cell2Id;
+    // edges of cell c are edgeStart[c] until edgeStart[c + 1]
+    final int[] edgeStart;
+    // members of edge e are members[memberStart[e]] until members[memberStart[e + 1]]
+    final int[] memberStart;
+    final int[] members;
+    final int[] parentStart;
+    final int[] parents;
+    final long[] instantiationTime;
+    // cells are numbered in the order of treeLevels, so level l holds the ids levelStart[l] until levelStart[l + 1]
+    final int[] levelStart;
+
+    CompactHypergraph(InstantiatedModel model) {
+        var cellList = new ArrayList<Cell>();
+        cell2Id = new HashMap<>();
+        levelStart = new int[model.treeLevels.size() + 1];
+        int level = 0;
+        for (var currLevel : model.treeLevels) {
+            for (var cell : currLevel) {
+                if (cell2Id.putIfAbsent(cell, cellList.size()) == null) {
+                    cellList.add(cell);
+                }
+            }
+            levelStart[++level] = cellList.size();
+        }
+
+        int numEdges = 0, numMembers = 0;
+        for (int cellIdx = 0; cellIdx < cellList.size(); cellIdx++) {
+            var edges = model.cell2Edge.get(cellList.get(cellIdx));
+            if (edges != null) {
+                numEdges += edges.size();
+                for (var edge : edges) {
+                    numMembers += edge.size();
+                    for (var cell : edge) {
+                        // every member is part of a level, but stay safe for models that were changed afterwards
+                        if (cell2Id.putIfAbsent(cell, cellList.size()) == null) {
+                            cellList.add(cell);
+                        }
+                    }
+                }
+            }
+        }
+
+        cells = cellList.toArray(new Cell[0]);
+        edgeStart = new int[cells.length + 1];
+        memberStart = new int[numEdges + 1];
+        members = new int[numMembers];
+        parentStart = new int[cells.length + 1];
+        instantiationTime = new long[cells.length];
+        int edgeIdx = 0, memberIdx = 0, numParents = 0;
+        for (int cellIdx = 0; cellIdx < cells.length; cellIdx++) {
+            var edges = model.cell2Edge.get(cells[cellIdx]);
+            if (edges != null) {
+                for (var edge : edges) {
+                    for (var cell : edge) {
+                        members[memberIdx++] = cell2Id.get(cell);
+                    }
+                    memberStart[++edgeIdx] = memberIdx;
+                }
+            }
+            edgeStart[cellIdx + 1] = edgeIdx;
+            instantiationTime[cellIdx] = model.instantiationTime.getOrDefault(cells[cellIdx], 0L);
+            var cellParents = model.cell2Parents.get(cells[cellIdx]);
+            numParents += cellParents == null ? 0 : cellParents.size();
+            parentStart[cellIdx + 1] = numParents;
+        }
+        parents = new int[numParents];
+        int parentIdx = 0;
+        for (var cell : cells) {
+            var cellParents = model.cell2Parents.get(cell);
+            if (cellParents != null) {
+                for (var parent : cellParents) {
+                    parents[parentIdx++] = cell2Id.get(parent);
+                }
+            }
+        }
+    }
+
+    int numCells() {
+        return cells.length;
+    }
+
+    int numEdges() {
+        return memberStart.length - 1;
+    }
+
+    int numLevels() {
+        return levelStart.length - 1;
+    }
+
+    int id(Cell cell) {
+        return cell2Id.get(cell);
+    }
+
+    int degree(int cell) {
+        return edgeStart[cell + 1] - edgeStart[cell];
+    }
+
+    boolean edgeContains(int edge, int cell) {
+        for (int i = memberStart[edge]; i < memberStart[edge + 1]; i++) {
+            if (members[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // index of the level in treeLevels that holds the cell, or numLevels() if it is in none
+    int level(int cell) {
+        if (cell < 0 || cell >= levelStart[numLevels()]) {
+            return numLevels();
+        }
+        int lo = 0, hi = numLevels() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (levelStart[mid] <= cell) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // picks the cheapest member of every edge of the cell and returns the summed cost of these members
+    long chooseCheapest(int cell, long[] cost, int[] edgeMin) {
+        long sum = 0;
+        for (int edge = edgeStart[cell]; edge < edgeStart[cell + 1]; edge++) {
+            long minCost = Integer.MAX_VALUE;
+            int minCell = -1;
+            for (int i = memberStart[edge]; i < memberStart[edge + 1]; i++) {
+                if (minCell == -1 || cost[members[i]] < minCost) {
+                    minCell = members[i];
+                    minCost = cost[minCell];
+                }
+            }
+            edgeMin[edge] = minCell;
+            sum += minCost;
+        }
+        return sum;
+    }
+
+    // fills order with the cells reachable from the roots in post order, so every cell comes after all members of its edges
+    int postOrder(int[] roots, int[] order) {
+        var state = new boolean[cells.length];
+        var cursor = new int[cells.length];
+        var stack = new int[cells.length];
+        int orderSize = 0, stackSize = 0;
+        for (var root : roots) {
+            if (state[root]) {
+                continue;
+            }
+            state[root] = true;
+            cursor[root] = memberStart[edgeStart[root]];
+            stack[stackSize++] = root;
+            while (stackSize > 0) {
+                var curr = stack[stackSize - 1];
+                var end = memberStart[edgeStart[curr + 1]];
+                while (cursor[curr] < end && state[members[cursor[curr]]]) {
+                    cursor[curr]++;
+                }
+                if (cursor[curr] < end) {
+                    var child = members[cursor[curr]++];
+                    state[child] = true;
+                    cursor[child] = memberStart[edgeStart[child]];
+                    stack[stackSize++] = child;
+                } else {
+                    stackSize--;
+                    order[orderSize++] = curr;
+                }
+            }
+        }
+        return orderSize;
+    }
+
+    // the selection of optimalDelete over the cells in post order, it is feasible on every DAG and exact on trees
+    int[] treeDpSelection(int[] order, int orderSize, int[] roots) {
+        var cost = new long[cells.length];
+        var edgeMin = new int[numEdges()];
+        for (int i = 0; i < orderSize; i++) {
+            var cell = order[i];
+            cost[cell] = 1;
+            cost[cell] += chooseCheapest(cell, cost, edgeMin);
+        }
+
+        var selected = new boolean[cells.length];
+        var selection = new int[cells.length];
+        int selectionSize = 0;
+        for (var root : roots) {
+            if (!selected[root]) {
+                selected[root] = true;
+                selection[selectionSize++] = root;
+            }
+        }
+        for (int idx = 0; idx < selectionSize; idx++) {
+            var cell = selection[idx];
+            for (int edge = edgeStart[cell]; edge < edgeStart[cell + 1]; edge++) {
+                if (!isHit(edge, selected) && !selected[edgeMin[edge]]) {
+                    selected[edgeMin[edge]] = true;
+                    selection[selectionSize++] = edgeMin[edge];
+                }
+            }
+        }
+        return Arrays.copyOf(selection, selectionSize);
+    }
+
+    boolean isHit(int edge, boolean[] selected) {
+        for (int i = memberStart[edge]; i < memberStart[edge + 1]; i++) {
+            if (selected[members[i]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // scratch space of the traversal kernels, reused across calls on the same thread
+    static final class Workspace {
+        private static final ThreadLocal<Workspace> LOCAL = ThreadLocal.withInitial(Workspace::new);
+
+        final IntDeque queue = new IntDeque();
+        final Marks visited = new Marks();
+        final Marks secondary = new Marks();
+        final Marks tertiary = new Marks();
+        long[] cost = new long[0];
+        int[] edgeMin = new int[0];
+
+        static Workspace get(CompactHypergraph graph) {
+            var workspace = LOCAL.get();
+            var numCells = graph.numCells();
+            var numEdges = graph.numEdges();
+            if (workspace.cost.length < numCells) {
+                workspace.cost = new long[Math.max(numCells, workspace.cost.length * 2)];
+            }
+            if (workspace.edgeMin.length < numEdges) {
+                workspace.edgeMin = new int[Math.max(numEdges, workspace.edgeMin.length * 2)];
+            }
+            Arrays.fill(workspace.cost, 0, numCells, Integer.MAX_VALUE);
+            Arrays.fill(workspace.edgeMin, 0, numEdges, -1);
+            workspace.queue.clear();
+            workspace.visited.reset(numCells);
+            workspace.secondary.reset(numCells);
+            workspace.tertiary.reset(numCells);
+            return workspace;
+        }
+    }
+
+    // set of ids that is cleared in O(1) by moving to the next epoch
+    static final class Marks {
+        private int[] stamps = new int[0];
+        private int epoch = 0;
+        private int size = 0;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[Math.max(capacity, stamps.length * 2)];
+                epoch = 0;
+            } else if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                epoch = 0;
+            }
+            epoch++;
+            size = 0;
+        }
+
+        boolean mark(int id) {
+            if (stamps[id] == epoch) {
+                return false;
+            }
+            stamps[id] = epoch;
+            size++;
+            return true;
+        }
+
+        boolean isMarked(int id) {
+            return stamps[id] == epoch;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    static final class IntDeque {
+        private int[] elements = new int[16];
+        private int head = 0;
+        private int size = 0;
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void addLast(int value) {
+            grow();
+            elements[(head + size++) & (elements.length - 1)] = value;
+        }
+
+        void addFirst(int value) {
+            grow();
+            head = (head - 1) & (elements.length - 1);
+            elements[head] = value;
+            size++;
+        }
+
+        int poll() {
+            var value = elements[head];
+            head = (head + 1) & (elements.length - 1);
+            size--;
+            return value;
+        }
+
+        private void grow() {
+            if (size < elements.length) {
+                return;
+            }
+            var grown = new int[elements.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = elements[(head + i) & (elements.length - 1)];
+            }
+            elements = grown;
+            head = 0;
+        }
+    }
+}
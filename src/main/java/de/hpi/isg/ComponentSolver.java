@@ -0,0 +1,166 @@
+package de.hpi.isg;
+
+import com.gurobi.gurobi.GRBEnv;
+import com.gurobi.gurobi.GRBException;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+// splits the model of a batch into its connected components and solves them in parallel
+// components share no cell and no edge, so the union of their deletion sets is a deletion set of the batch
+// and every component is solved as well as the whole model, its ilp is just smaller
+final class ComponentSolver {
+    interface Solver<E extends Exception> {
+        HashSet<Cell> solve(InstantiatedModel model, List<Cell> deletedCells) throws E;
+    }
+
+    // gurobi environments are not shared between threads, so every worker creates its own on the first ilp
+    static final class Worker extends ForkJoinWorkerThread {
+        private GRBEnv env;
+
+        Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        GRBEnv env() throws GRBException {
+            if (env == null) {
+                env = Main.createEnv();
+            }
+            return env;
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            if (env != null) {
+                try {
+                    env.dispose();
+                } catch (GRBException e) {
+                    // the thread ends anyway
+                }
+            }
+            super.onTermination(exception);
+        }
+    }
+
+    private static ForkJoinPool pool;
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            var threads = ConfigParameter.componentThreads > 0 ? ConfigParameter.componentThreads : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(threads, Worker::new, null, false);
+        }
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E extends Exception> HashSet<Cell> solve(InstantiatedModel model, List<Cell> deletedCells, Solver<E> solver) throws E {
+        if (!ConfigParameter.decomposeComponents) {
+            return solver.solve(model, deletedCells);
+        }
+        var start = System.nanoTime();
+        var graph = model.graph;
+        var component = components(graph);
+
+        // component -> deleted cells, in the order of the batch
+        var component2Roots = new LinkedHashMap<Integer, ArrayList<Cell>>();
+        for (var deleted : deletedCells) {
+            component2Roots.computeIfAbsent(component[graph.id(deleted)], c -> new ArrayList<>()).add(deleted);
+        }
+        if (component2Roots.size() == 1) {
+            return solver.solve(model, deletedCells);
+        }
+
+        // ids of the cells of component i are ids[idStart[i]] until ids[idStart[i + 1]], in ascending order
+        var component2Idx = new HashMap<Integer, Integer>();
+        for (var root : component2Roots.keySet()) {
+            component2Idx.put(root, component2Idx.size());
+        }
+        var idStart = new int[component2Idx.size() + 1];
+        for (int cell = 0; cell < graph.numCells(); cell++) {
+            var idx = component2Idx.get(component[cell]);
+            if (idx != null) {
+                idStart[idx + 1]++;
+            }
+        }
+        for (int i = 0; i < component2Idx.size(); i++) {
+            idStart[i + 1] += idStart[i];
+        }
+        var ids = new int[idStart[component2Idx.size()]];
+        var filled = Arrays.copyOf(idStart, component2Idx.size());
+        for (int cell = 0; cell < graph.numCells(); cell++) {
+            var idx = component2Idx.get(component[cell]);
+            if (idx != null) {
+                ids[filled[idx]++] = cell;
+            }
+        }
+        var splitTime = System.nanoTime() - start;
+
+        var roots = new ArrayList<>(component2Roots.values());
+        var results = new ArrayList<HashSet<Cell>>(Collections.nCopies(roots.size(), null));
+        var failures = new Exception[roots.size()];
+        var tasks = new ArrayList<ForkJoinTask<?>>(roots.size());
+        for (int i = 0; i < roots.size(); i++) {
+            var idx = i;
+            tasks.add(pool().submit(() -> {
+                try {
+                    var componentModel = new InstantiatedModel(model, ids, idStart[idx], idStart[idx + 1]);
+                    // the batch model is built once, its construction is accounted with the first component
+                    if (idx == 0) {
+                        componentModel.modelConstructionTime += model.modelConstructionTime + splitTime;
+                    }
+                    results.set(idx, solver.solve(componentModel, roots.get(idx)));
+                } catch (Exception e) {
+                    failures[idx] = e;
+                }
+            }));
+        }
+        for (var task : tasks) {
+            task.join();
+        }
+        for (var failure : failures) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw (E) failure;
+            }
+        }
+
+        var toDelete = new HashSet<Cell>();
+        for (var result : results) {
+            toDelete.addAll(result);
+        }
+        return toDelete;
+    }
+
+    // a representative of the component of every cell, a cell is connected to the members of its edges
+    static int[] components(CompactHypergraph graph) {
+        var parent = new int[graph.numCells()];
+        for (int cell = 0; cell < parent.length; cell++) {
+            parent[cell] = cell;
+        }
+        for (int cell = 0; cell < parent.length; cell++) {
+            for (int i = graph.memberStart[graph.edgeStart[cell]]; i < graph.memberStart[graph.edgeStart[cell + 1]]; i++) {
+                var cellRoot = find(parent, cell);
+                var memberRoot = find(parent, graph.members[i]);
+                if (cellRoot != memberRoot) {
+                    parent[Math.max(cellRoot, memberRoot)] = Math.min(cellRoot, memberRoot);
+                }
+            }
+        }
+        for (int cell = 0; cell < parent.length; cell++) {
+            parent[cell] = find(parent, cell);
+        }
+        return parent;
+    }
+
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+}
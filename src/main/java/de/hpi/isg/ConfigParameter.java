@@ -16,12 +16,67 @@ public class ConfigParameter {
     static boolean batching = false;
     static boolean scheduling = false;
     static boolean averageDependence = false;
+    // instantiate once under all rules and evaluate the rule subsets in memory
+    static boolean maskRuleSubsets = false;
     static int[] batchSizes = new int[]{numKeys};
     static boolean isBatchSizeTime = false;
     static boolean measureMemory = true;
     static long startSchedule = 1;
     static long endSchedule = 2;
     static long baseFrequency = 1000;
+    static int instantiationBatchSize = 1000;
+    static int instantiationThreads = 1;
+    static boolean graphCache = false;
+    // edges of the dependency graph cache, 0 does not bound it
+    static long graphCacheSize = 0;
+    // edges of the cache of rule instantiations per cell, 0 turns it off
+    static long instantiationCacheSize = 0;
+    // the index advisor creates the indexes that the rule queries miss
+    static boolean createIndexes = false;
+    // evaluate the rules on an in memory copy of the rule columns
+    static boolean snapshot = false;
+    static boolean ilp = true;
+    // seconds, 0 means no limit
+    static double ilpTimeLimit = 0;
+    static double ilpMipGap = 1e-4;
+    // 0 lets Gurobi choose
+    static int ilpThreads = 0;
+    static boolean incrementalIlp = false;
+    // the persistent model is rebuilt once it holds more cells
+    static int incrementalIlpMaxCells = 1000000;
+    static boolean branchAndBound = false;
+    static boolean lpRounding = false;
+    static int lpIterations = 200;
+    static int lpRoundings = 16;
+    // rows per table in units of DatasetGenerator.BASE_ROWS
+    static double generatorScaleFactor = 1;
+    // average number of rows that share a join value
+    static double generatorFanOut = 10;
+    // 0 draws join values uniformly, otherwise the exponent of a power law
+    static double generatorSkew = 0;
+    static long generatorSeed = 42L;
+    static int servicePort = 7070;
+    static int serviceBatchSize = 100;
+    // ms a batch waits for more requests after its first one
+    static long serviceBatchDelay = 50;
+    static int serviceQueueSize = 10000;
+    // 0 optimal, 1 approximate, 2 ilp, 3 branch and bound, 4 lp rounding
+    static int serviceDeletionMethod = 0;
+    // directory for the csv files, empty loads the tables into the database
+    static String generatorOutput = "";
+    // solves the connected components of a batch on their own
+    static boolean decomposeComponents = false;
+    // 0 uses one thread per core
+    static int componentThreads = 0;
+    // ms after its insertion a cell has to be erased, and ms the erasure may wait to share a batch
+    static long retentionPeriod = 0;
+    static long retentionGracePeriod = 3600000;
+    static long retentionTick = 1000;
+    // ms before the deadline of a group that its erasure may take, including the tick, the queue and the solver
+    static long retentionMargin = 60000;
+    static int retentionMaxRetries = 8;
+    static String retentionLog = "retention.log";
+    static int retentionPort = 7071;
 
 
     public static void setDataset(String dataset) {
@@ -0,0 +1,286 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// base tables and insertion time tables that fit the rule, schema and derived files, written as csv files or copied into the database
+// every table gets generatorScaleFactor * BASE_ROWS rows, row i is inserted at startSchedule + i / rows * (endSchedule - startSchedule)
+// columns that are compared by an equi join of a rule condition share their values, so that about generatorFanOut rows join with each value
+public class DatasetGenerator {
+    static final long BASE_ROWS = 10000;
+    private static final Pattern EQUI_JOIN = Pattern.compile("(\\w+)\\.(\\w+)\\s*=\\s*(\\w+)\\.(\\w+)");
+
+    private final HashMap<String, String> tableName2keyCol;
+    // table -> columns without the key column, the order of the csv columns
+    private final TreeMap<String, TreeSet<String>> table2Columns = new TreeMap<>();
+    // table -> columns of the insertion time table
+    private final TreeMap<String, TreeSet<String>> table2TimedColumns = new TreeMap<>();
+    // union find over the qualified columns of the equi joins
+    private final HashMap<String, String> column2Parent = new HashMap<>();
+    // group -> table whose key the group refers to
+    private final HashMap<String, String> group2KeyTable = new HashMap<>();
+    private final long rows;
+    private final long domainSize;
+    private final long startTime;
+    private final long timeRange;
+
+    public DatasetGenerator(Collection<Rule> rules, HashMap<String, String> tableName2keyCol) throws Exception {
+        this.tableName2keyCol = tableName2keyCol;
+        rows = Math.max(1, Math.round(ConfigParameter.generatorScaleFactor * BASE_ROWS));
+        domainSize = Math.max(1, Math.round(rows / ConfigParameter.generatorFanOut));
+        startTime = ConfigParameter.startSchedule;
+        timeRange = Math.max(0, ConfigParameter.endSchedule - ConfigParameter.startSchedule);
+
+        for (var rule : rules) {
+            for (var table : rule.tables) {
+                if (!tableName2keyCol.containsKey(table)) {
+                    throw new Exception("No key column for table " + table);
+                }
+                table2Columns.computeIfAbsent(table, t -> new TreeSet<>());
+                table2TimedColumns.computeIfAbsent(table, t -> new TreeSet<>());
+            }
+            addColumn(rule.head, true);
+            for (var attribute : rule.tail) {
+                addColumn(attribute, true);
+            }
+            if (rule.condition == null) {
+                continue;
+            }
+            var matcher = EQUI_JOIN.matcher(rule.condition);
+            while (matcher.find()) {
+                var leftTable = rule.table2Alias.get(matcher.group(1));
+                var rightTable = rule.table2Alias.get(matcher.group(3));
+                if (leftTable == null || rightTable == null) {
+                    continue;
+                }
+                addColumn(new Attribute(leftTable, matcher.group(2)), false);
+                addColumn(new Attribute(rightTable, matcher.group(4)), false);
+                union(leftTable + "." + matcher.group(2), rightTable + "." + matcher.group(4));
+            }
+        }
+        for (var entry : tableName2keyCol.entrySet()) {
+            var keyColumn = entry.getKey() + "." + entry.getValue();
+            if (column2Parent.containsKey(keyColumn)) {
+                group2KeyTable.putIfAbsent(find(keyColumn), entry.getKey());
+            }
+        }
+    }
+
+    private void addColumn(Attribute attribute, boolean timed) {
+        if (!attribute.attribute.equals(tableName2keyCol.get(attribute.table))) {
+            table2Columns.get(attribute.table).add(attribute.attribute);
+        }
+        if (timed) {
+            table2TimedColumns.get(attribute.table).add(attribute.attribute);
+        }
+    }
+
+    private String find(String column) {
+        var parent = column2Parent.computeIfAbsent(column, c -> c);
+        if (parent.equals(column)) {
+            return column;
+        }
+        var root = find(parent);
+        column2Parent.put(column, root);
+        return root;
+    }
+
+    private void union(String left, String right) {
+        var leftRoot = find(left);
+        var rightRoot = find(right);
+        if (!leftRoot.equals(rightRoot)) {
+            column2Parent.put(leftRoot, rightRoot);
+        }
+    }
+
+    private boolean isKey(String table, String column) {
+        return column.equals(tableName2keyCol.get(table));
+    }
+
+    // columns compared with a key hold keys as well, every other column is text
+    private String columnType(String table, String column) {
+        if (isKey(table, column)) {
+            return "bigint";
+        }
+        var qualified = table + "." + column;
+        return column2Parent.containsKey(qualified) && group2KeyTable.containsKey(find(qualified)) ? "bigint" : "text";
+    }
+
+    private long insertionTime(long row) {
+        return startTime + (long) ((double) timeRange * row / rows);
+    }
+
+    // an index in [0, n), uniform or power law distributed with the configured skew, small indices are the frequent ones
+    private static long sample(Random random, long n) {
+        var skew = ConfigParameter.generatorSkew;
+        double x;
+        if (skew <= 0) {
+            x = random.nextDouble() * n;
+        } else if (skew == 1) {
+            x = Math.exp(random.nextDouble() * Math.log(n + 1)) - 1;
+        } else {
+            x = Math.pow(random.nextDouble() * (Math.pow(n + 1, 1 - skew) - 1) + 1, 1 / (1 - skew)) - 1;
+        }
+        return Math.min(n - 1, (long) x);
+    }
+
+    private String value(Random random, String table, String column, long row) {
+        var qualified = table + "." + column;
+        if (!column2Parent.containsKey(qualified)) {
+            return "v" + row;
+        }
+        if (!group2KeyTable.containsKey(find(qualified))) {
+            return "v" + sample(random, domainSize);
+        }
+        // only rows that are inserted before this row are referenced, so that the insertion times follow the references
+        var stride = (double) rows / domainSize;
+        var bound = Math.min(domainSize - 1, (long) (row / stride));
+        return String.valueOf((long) (sample(random, bound + 1) * stride));
+    }
+
+    private List<String> createStatements(String table) {
+        var keyCol = tableName2keyCol.get(table);
+        var columns = new ArrayList<String>();
+        columns.add(keyCol + " bigint NOT NULL");
+        for (var column : table2Columns.get(table)) {
+            columns.add(column + " " + columnType(table, column));
+        }
+        var timedColumns = new ArrayList<String>();
+        timedColumns.add("insertionKey bigint NOT NULL");
+        for (var column : table2TimedColumns.get(table)) {
+            timedColumns.add(column + " bigint");
+        }
+        return List.of(
+                "DROP TABLE IF EXISTS " + table + ", " + table + Instatiator.IT_SUFFIX,
+                "CREATE TABLE " + table + " (" + String.join(", ", columns) + ")",
+                "CREATE TABLE " + table + Instatiator.IT_SUFFIX + " (" + String.join(", ", timedColumns) + ")");
+    }
+
+    // the keys are added after the rows are copied, which is much faster than maintaining them during the copy
+    private List<String> keyStatements(String table) {
+        return List.of(
+                "ALTER TABLE " + table + " ADD PRIMARY KEY (" + tableName2keyCol.get(table) + ")",
+                "ALTER TABLE " + table + Instatiator.IT_SUFFIX + " ADD PRIMARY KEY (insertionKey)");
+    }
+
+    private String header(String table) {
+        var header = new StringJoiner(",");
+        header.add(tableName2keyCol.get(table));
+        table2Columns.get(table).forEach(header::add);
+        return header.toString();
+    }
+
+    private String timedHeader(String table) {
+        var header = new StringJoiner(",");
+        header.add("insertionKey");
+        table2TimedColumns.get(table).forEach(header::add);
+        return header.toString();
+    }
+
+    private void writeRows(String table, Writer out) throws IOException {
+        var random = new Random(ConfigParameter.generatorSeed ^ table.hashCode());
+        var line = new StringBuilder();
+        for (long row = 0; row < rows; row++) {
+            line.setLength(0);
+            line.append(row);
+            for (var column : table2Columns.get(table)) {
+                line.append(',').append(value(random, table, column, row));
+            }
+            out.append(line.append('\n'));
+        }
+    }
+
+    // every column of a row is inserted together with the row
+    private void writeTimedRows(String table, Writer out) throws IOException {
+        var line = new StringBuilder();
+        for (long row = 0; row < rows; row++) {
+            line.setLength(0);
+            line.append(row);
+            var time = insertionTime(row);
+            for (int i = table2TimedColumns.get(table).size(); i > 0; i--) {
+                line.append(',').append(time);
+            }
+            out.append(line.append('\n'));
+        }
+    }
+
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        var script = new ArrayList<String>();
+        for (var table : table2Columns.keySet()) {
+            var start = System.nanoTime();
+            var file = directory.resolve(table + ".csv");
+            var timedFile = directory.resolve(table + Instatiator.IT_SUFFIX + ".csv");
+            try (var out = Files.newBufferedWriter(file); var timedOut = Files.newBufferedWriter(timedFile)) {
+                out.append(header(table)).append('\n');
+                timedOut.append(timedHeader(table)).append('\n');
+                writeRows(table, out);
+                writeTimedRows(table, timedOut);
+            }
+            for (var statement : createStatements(table)) {
+                script.add(statement + ";");
+            }
+            script.add("\\copy " + table + " FROM '" + file.toAbsolutePath() + "' WITH (FORMAT csv, HEADER)");
+            script.add("\\copy " + table + Instatiator.IT_SUFFIX + " FROM '" + timedFile.toAbsolutePath() + "' WITH (FORMAT csv, HEADER)");
+            for (var statement : keyStatements(table)) {
+                script.add(statement + ";");
+            }
+            System.out.println(table + ": " + rows + " rows in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+        Files.write(directory.resolve("load_" + ConfigParameter.dataset + ".sql"), script);
+    }
+
+    public void load() throws SQLException, IOException {
+        var storage = Storage.fromConfig();
+        try (var c = storage.connect(); var statement = c.createStatement()) {
+            for (var table : table2Columns.keySet()) {
+                var start = System.nanoTime();
+                for (var sql : createStatements(table)) {
+                    statement.execute(sql);
+                }
+                try (var out = storage.bulkWriter(c, table)) {
+                    writeRows(table, out);
+                }
+                try (var out = storage.bulkWriter(c, table + Instatiator.IT_SUFFIX)) {
+                    writeTimedRows(table, out);
+                }
+                for (var sql : keyStatements(table)) {
+                    statement.execute(sql);
+                }
+                statement.execute(storage.analyze(table));
+                statement.execute(storage.analyze(table + Instatiator.IT_SUFFIX));
+                System.out.println(table + ": " + rows + " rows in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFilePath = args.length > 0 ? args[0] : "config.json";
+        Main.parseConfigFile(Files.readString(Paths.get(configFilePath)));
+        Main.parseRules();
+        Main.parseSchema();
+        Main.parseDerivedData();
+
+        var allRules = new ArrayList<>(Main.rules);
+        allRules.addAll(Main.derivedData);
+        var generator = new DatasetGenerator(allRules, Main.tableName2keyCol);
+        if (ConfigParameter.generatorOutput.isEmpty()) {
+            generator.load();
+            if (ConfigParameter.createIndexes) {
+                var instatiator = new Instatiator(Main.attributeInHead, Main.attributeInTail, Main.tableName2keyCol);
+                new IndexAdvisor(instatiator).advise(allRules);
+                instatiator.c.close();
+            }
+        } else {
+            generator.writeCsv(Paths.get(ConfigParameter.generatorOutput));
+        }
+    }
+}
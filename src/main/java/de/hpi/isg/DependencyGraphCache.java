@@ -0,0 +1,175 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+// instantiated neighbourhoods of cells, shared by all models that are built through one Instatiator
+// the cache holds at most capacity edges, the least recently used neighbourhoods are evicted first
+public class DependencyGraphCache {
+    private static final Pattern QUALIFIED_COLUMN = Pattern.compile("(\\w+)\\.(\\w+)");
+
+    static class Entry {
+        // the raw edges hold every row with an insertion time of at least this value
+        final long sourceInsertionTime;
+        final ArrayList<HyperEdge> rawEdges;
+
+        Entry(long sourceInsertionTime, ArrayList<HyperEdge> rawEdges) {
+            this.sourceInsertionTime = sourceInsertionTime;
+            this.rawEdges = rawEdges;
+        }
+    }
+
+    private final long capacity;
+    // least recently used first
+    private final LinkedHashMap<Cell, Entry> cell2Entry = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Cell, HashSet<Cell>> member2Owners = new HashMap<>();
+    // erasing one of these columns changes which rows join, so it affects cells that are not part of any edge
+    private final HashSet<String> conditionColumns;
+    // cached edges
+    private long size = 0;
+    long hits = 0;
+    long misses = 0;
+    long evictions = 0;
+
+    public DependencyGraphCache(Collection<Rule> rules, long capacity) {
+        this.capacity = capacity;
+        conditionColumns = conditionColumns(rules);
+    }
+
+    // qualified columns that the conditions of the rules join or filter on
+    static HashSet<String> conditionColumns(Collection<Rule> rules) {
+        var conditionColumns = new HashSet<String>();
+        for (var rule : rules) {
+            if (rule.condition == null) {
+                continue;
+            }
+            var matcher = QUALIFIED_COLUMN.matcher(rule.condition);
+            while (matcher.find()) {
+                var table = rule.table2Alias.get(matcher.group(1));
+                if (table != null) {
+                    conditionColumns.add(table + "." + matcher.group(2));
+                }
+            }
+        }
+        return conditionColumns;
+    }
+
+    // filtered copies of the cached edges, or null if the cell has to be instantiated
+    synchronized ArrayList<HyperEdge> get(Cell cell, long sourceInsertionTime) {
+        var entry = cell2Entry.get(cell);
+        if (entry == null || entry.sourceInsertionTime > sourceInsertionTime) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return filterEdges(entry.rawEdges, sourceInsertionTime);
+    }
+
+    synchronized void put(Cell cell, long sourceInsertionTime, ArrayList<HyperEdge> rawEdges) {
+        removeEntry(cell);
+        var weight = weight(rawEdges);
+        if (weight > capacity) {
+            return;
+        }
+        while (size + weight > capacity) {
+            removeEntry(cell2Entry.keySet().iterator().next());
+            evictions++;
+        }
+        cell2Entry.put(cell, new Entry(sourceInsertionTime, rawEdges));
+        size += weight;
+        for (var edge : rawEdges) {
+            for (var member : edge) {
+                member2Owners.computeIfAbsent(member, k -> new HashSet<>()).add(cell);
+            }
+        }
+    }
+
+    // drops every neighbourhood that contains one of the changed cells
+    synchronized void invalidate(Collection<Cell> changed) {
+        for (var cell : changed) {
+            if (conditionColumns.contains(cell.attribute.table + "." + cell.attribute.attribute)) {
+                clear();
+                return;
+            }
+        }
+        for (var cell : changed) {
+            var owners = member2Owners.remove(cell);
+            if (owners != null) {
+                for (var owner : owners) {
+                    removeEntry(owner);
+                }
+            }
+        }
+    }
+
+    synchronized void clear() {
+        cell2Entry.clear();
+        member2Owners.clear();
+        size = 0;
+    }
+
+    synchronized int size() {
+        return cell2Entry.size();
+    }
+
+    private void removeEntry(Cell cell) {
+        var entry = cell2Entry.remove(cell);
+        if (entry == null) {
+            return;
+        }
+        size -= weight(entry.rawEdges);
+        for (var edge : entry.rawEdges) {
+            for (var member : edge) {
+                var owners = member2Owners.get(member);
+                if (owners != null) {
+                    owners.remove(cell);
+                    if (owners.isEmpty()) {
+                        member2Owners.remove(member);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long weight(ArrayList<HyperEdge> rawEdges) {
+        // a cell without edges is cached as well and takes the place of one edge
+        return Math.max(1, rawEdges.size());
+    }
+
+    @Override
+    public synchronized String toString() {
+        var requests = hits + misses;
+        return "graph cache: " + cell2Entry.size() + " entries, " + size + " edges, hit ratio " + (requests == 0 ? 0 : (double) hits / requests)
+                + ", hits " + hits + ", misses " + misses + ", evictions " + evictions;
+    }
+
+    static ArrayList<HyperEdge> filterEdges(ArrayList<HyperEdge> rawEdges, long sourceInsertionTime) {
+        var result = new ArrayList<HyperEdge>(rawEdges.size());
+        for (var rawEdge : rawEdges) {
+            var edge = filterEdge(rawEdge, sourceInsertionTime);
+            if (edge != null) {
+                result.add(edge);
+            }
+        }
+        return result;
+    }
+
+    // same rules as the instantiation queries: an erased member drops the edge, members inserted before the source are left out
+    static HyperEdge filterEdge(HyperEdge rawEdge, long sourceInsertionTime) {
+        // same capacity and insertion order as a directly instantiated edge, so the iteration order matches
+        var edge = new HyperEdge(rawEdge.size());
+        for (var cell : rawEdge) {
+            if (cell.value == null) {
+                return null;
+            }
+            if (cell.insertionTime >= sourceInsertionTime) {
+                edge.add(cell);
+            }
+        }
+        return edge.isEmpty() ? null : edge;
+    }
+}
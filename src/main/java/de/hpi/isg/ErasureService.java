@@ -0,0 +1,282 @@
+package de.hpi.isg;
+
+import com.gurobi.gurobi.GRBException;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// resident erasure process, requests arrive on a local socket and are erased in micro batches
+// a request is one line "id,table,attribute,key", every request is answered with "id,done,<erased cells of its batch>,<ms>",
+// "id,skipped" if the cell does not exist or is already erased, or "id,error,<message>" with a quoted message if it holds a comma
+// readers block once serviceQueueSize requests are waiting, so clients are slowed down by the socket instead of filling the heap
+public class ErasureService {
+    // receives the answer line of a request
+    interface Replies {
+        void reply(String line);
+    }
+
+    static final class Request {
+        final String id;
+        final Cell cell;
+        final Replies replies;
+        final long arrival = System.nanoTime();
+
+        Request(String id, Cell cell, Replies replies) {
+            this.id = id;
+            this.cell = cell;
+            this.replies = replies;
+        }
+    }
+
+    static final class Connection implements Replies {
+        final Socket socket;
+        final Writer out;
+        // requests that are read but not answered yet
+        private int pending = 0;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        synchronized void received() {
+            pending++;
+        }
+
+        @Override
+        public synchronized void reply(String line) {
+            pending--;
+            write(line);
+            notifyAll();
+        }
+
+        synchronized void write(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                // the client is gone, its remaining requests are still erased
+            }
+        }
+
+        synchronized void awaitReplies() throws InterruptedException {
+            while (pending > 0) {
+                wait();
+            }
+        }
+    }
+
+    private final Instatiator instatiator;
+    private final ArrayBlockingQueue<Request> queue = new ArrayBlockingQueue<>(ConfigParameter.serviceQueueSize);
+    private final IncrementalIlp incrementalIlp;
+
+    public ErasureService(Instatiator instatiator) throws Exception {
+        this.instatiator = instatiator;
+        // a missing licence fails here and not with the first batch
+        if (ConfigParameter.serviceDeletionMethod == 2) {
+            Main.env();
+        }
+        incrementalIlp = ConfigParameter.serviceDeletionMethod == 2 && ConfigParameter.incrementalIlp ? new IncrementalIlp() : null;
+    }
+
+    public void listen(int port) throws IOException {
+        var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        var acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    var socket = server.accept();
+                    var reader = new Thread(() -> read(socket), "erasure-reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "erasure-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void read(Socket socket) {
+        try (socket) {
+            var connection = new Connection(socket);
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                var request = parse(line, connection);
+                if (request != null) {
+                    connection.received();
+                    submit(request);
+                }
+            }
+            // the answers of requests in the queue are still written before the socket is closed
+            connection.awaitReplies();
+        } catch (IOException | InterruptedException e) {
+            // the client is gone
+        }
+    }
+
+    // a request of a table and attribute of the rules, a broken line is answered right away and affects no batch
+    private static Request parse(String line, Connection connection) {
+        CSVRecord record;
+        try {
+            record = CSVFormat.DEFAULT.parse(new StringReader(line)).getRecords().get(0);
+        } catch (IOException | RuntimeException e) {
+            connection.write(error(line.split(",", 2)[0], "malformed line"));
+            return null;
+        }
+        if (record.size() != 4) {
+            connection.write(error(record.get(0), "expected id,table,attribute,key"));
+            return null;
+        }
+        // table and attribute end up in the sql of the instantiation, so only those of the rules are accepted
+        var attribute = Main.knownAttribute(record.get(1), record.get(2));
+        if (attribute == null) {
+            connection.write(error(record.get(0), "unknown attribute " + record.get(1) + "." + record.get(2)));
+            return null;
+        }
+        if (record.get(3).isEmpty()) {
+            connection.write(error(record.get(0), "empty key"));
+            return null;
+        }
+        return new Request(record.get(0), new Cell(attribute, record.get(3), null), connection);
+    }
+
+    static String error(String id, String message) {
+        return CSVFormat.DEFAULT.format(id, "error", message.replace('\n', ' '));
+    }
+
+    // the status field of an answer line, done, skipped or error
+    static String status(String line) throws IOException {
+        var record = CSVFormat.DEFAULT.parse(new StringReader(line)).getRecords().get(0);
+        return record.size() > 1 ? record.get(1) : "";
+    }
+
+    // blocks while the queue is full
+    void submit(Request request) throws InterruptedException {
+        queue.put(request);
+    }
+
+    // takes one batch at a time, the batch is closed once it is full or serviceBatchDelay ms after its first request
+    public void run() throws InterruptedException {
+        var batch = new ArrayList<Request>(ConfigParameter.serviceBatchSize);
+        while (true) {
+            batch.add(queue.take());
+            var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ConfigParameter.serviceBatchDelay);
+            while (batch.size() < ConfigParameter.serviceBatchSize) {
+                var request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (request == null) {
+                    break;
+                }
+                batch.add(request);
+            }
+            processBatch(batch);
+            batch.clear();
+        }
+    }
+
+    void processBatch(ArrayList<Request> batch) {
+        var start = System.nanoTime();
+        var cell2Requests = new LinkedHashMap<Cell, ArrayList<Request>>();
+        for (var request : batch) {
+            cell2Requests.computeIfAbsent(request.cell, c -> new ArrayList<>(1)).add(request);
+        }
+        try {
+            instatiator.completeCells(cell2Requests.keySet());
+            var cells = new ArrayList<Cell>(cell2Requests.size());
+            for (var iterator = cell2Requests.entrySet().iterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                if (entry.getKey().value == null) {
+                    for (var request : entry.getValue()) {
+                        request.replies.reply(request.id + ",skipped");
+                    }
+                    iterator.remove();
+                } else {
+                    cells.add(entry.getKey());
+                }
+            }
+            if (cells.isEmpty()) {
+                return;
+            }
+
+            var model = new InstantiatedModel(cells, instatiator);
+            var toDelete = deletionSet(model, cells);
+            instatiator.deleteCells(toDelete);
+            // the cells are erased once deleteCells committed, so a failure of the model only costs its reuse
+            if (incrementalIlp != null) {
+                try {
+                    incrementalIlp.erase(toDelete);
+                } catch (GRBException e) {
+                    incrementalIlp.invalidate();
+                    System.out.println("incremental ilp is rebuilt: " + e.getMessage());
+                }
+            }
+
+            var now = System.nanoTime();
+            for (var cell : cells) {
+                for (var request : cell2Requests.get(cell)) {
+                    request.replies.reply(request.id + ",done," + toDelete.size() + "," + (now - request.arrival) / 1000000);
+                }
+            }
+            // requests, distinct cells, erased cells, ms
+            System.out.println(batch.size() + "," + cells.size() + "," + toDelete.size() + "," + (now - start) / 1000000);
+        } catch (Exception e) {
+            try {
+                instatiator.c.rollback();
+            } catch (Exception rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            var message = String.valueOf(e.getMessage());
+            for (var requests : cell2Requests.values()) {
+                for (var request : requests) {
+                    request.replies.reply(error(request.id, message));
+                }
+            }
+        }
+    }
+
+    // the numbering of the deletion methods in Main.runDeletionMethod
+    private HashSet<Cell> deletionSet(InstantiatedModel model, ArrayList<Cell> cells) throws Exception {
+        switch (ConfigParameter.serviceDeletionMethod) {
+            case 0:
+                return Main.batchedOptimalDelete(model, cells);
+            case 1:
+                return Main.batchedApproximateDelete(model, cells);
+            case 2:
+                return incrementalIlp != null ? incrementalIlp.solve(model, cells) : Main.batchedIlpApproach(model, cells);
+            case 3:
+                return Main.batchedBranchAndBoundDelete(model, cells);
+            case 4:
+                return Main.batchedLpRoundingDelete(model, cells);
+            default:
+                throw new Exception("Unknown deletion method " + ConfigParameter.serviceDeletionMethod);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Main.initialize(args.length > 0 ? args[0] : "config.json");
+        ConfigParameter.measureMemory = false;
+        var instatiator = Main.createInstatiator();
+        var service = new ErasureService(instatiator);
+        service.listen(ConfigParameter.servicePort);
+        System.out.println("listening on port " + ConfigParameter.servicePort);
+        try {
+            service.run();
+        } finally {
+            instatiator.close();
+        }
+    }
+}
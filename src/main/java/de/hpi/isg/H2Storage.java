@@ -0,0 +1,102 @@
+package de.hpi.isg;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+
+// embedded database in process, e.g. connectionUrl jdbc:h2:./data/ and database erasure
+// unquoted names are upper case in h2, so the catalog is searched with upper case names
+public class H2Storage implements Storage {
+    @Override
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(ConfigParameter.connectionUrl + ConfigParameter.database, ConfigParameter.username, ConfigParameter.password);
+    }
+
+    @Override
+    public String keyType(Connection c, String table, String keyCol) throws SQLException {
+        try (var stmt = c.prepareStatement("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            stmt.setString(1, table.toUpperCase());
+            stmt.setString(2, keyCol.toUpperCase());
+            try (var rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Unknown key column of table " + table);
+                }
+                return rs.getString(1);
+            }
+        }
+    }
+
+    @Override
+    public String anyKey(String column, String keyType) {
+        return column + " = ANY(CAST(? AS " + keyType + " ARRAY))";
+    }
+
+    @Override
+    public Array keyArray(Connection c, Collection<String> keys) throws SQLException {
+        return c.createArrayOf("VARCHAR", keys.toArray());
+    }
+
+    // h2 has no copy protocol, the rows go through a temporary csv file that is read by CSVREAD on close
+    @Override
+    public Writer bulkWriter(Connection c, String table) throws SQLException, IOException {
+        var columns = new ArrayList<String>();
+        try (var stmt = c.prepareStatement("SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION")) {
+            stmt.setString(1, table.toUpperCase());
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        var file = Files.createTempFile(table, ".csv");
+        return new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16) {
+            boolean loaded = false;
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (loaded) {
+                    return;
+                }
+                loaded = true;
+                // CSVREAD needs its arguments as literals while the statement is parsed
+                try (var stmt = c.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO " + table + " SELECT * FROM CSVREAD(" + literal(file.toString()) + ", " + literal(String.join(",", columns)) + ", 'charset=UTF-8')");
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                } finally {
+                    Files.delete(file);
+                }
+            }
+        };
+    }
+
+    private static String literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    @Override
+    public String analyze(String table) {
+        return "ANALYZE TABLE " + table;
+    }
+
+    @Override
+    public String catalogName(String name) {
+        return name.toUpperCase();
+    }
+
+    // h2 estimates no costs, but the plan names the index or the table scan of every table
+    @Override
+    public String planCost(String plan) {
+        int scans = 0;
+        for (int idx = plan.indexOf(".tableScan"); idx >= 0; idx = plan.indexOf(".tableScan", idx + 1)) {
+            scans++;
+        }
+        return scans + " table scans";
+    }
+}
@@ -0,0 +1,242 @@
+package de.hpi.isg;
+
+import com.gurobi.gurobi.*;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+
+import java.util.*;
+
+// one ILP that is kept alive across consecutive batches, a batch only adds the cells and edges that are new to the model
+// constraints of edges that are missing in the current closure are relaxed to SUM(ai) - aj >= -1 instead of being removed
+public class IncrementalIlp {
+    private GRBModel grbModel;
+    private final HashMap<Cell, Integer> cell2Index = new HashMap<>();
+    private final ArrayList<Cell> cells = new ArrayList<>();
+    private final ArrayList<GRBVar> vars = new ArrayList<>();
+    // edge constraints per cell, keyed by the members of the edge
+    private final HashMap<Cell, HashMap<HashSet<Cell>, GRBConstr>> cell2Constrs = new HashMap<>();
+    private final HashSet<GRBConstr> activeConstrs = new HashSet<>();
+    private final HashSet<Cell> erased = new HashSet<>();
+    private final ArrayList<Cell> requested = new ArrayList<>();
+    // the model missed erased cells and is rebuilt with the next batch
+    private boolean stale = false;
+
+    public IncrementalIlp() throws GRBException {
+        reset();
+    }
+
+    private void reset() throws GRBException {
+        if (grbModel != null) {
+            grbModel.dispose();
+        }
+        grbModel = new GRBModel(Main.env());
+        Main.setIlpParameters(grbModel);
+        cell2Index.clear();
+        cells.clear();
+        vars.clear();
+        cell2Constrs.clear();
+        activeConstrs.clear();
+        erased.clear();
+        requested.clear();
+        stale = false;
+    }
+
+    public HashSet<Cell> solve(InstantiatedModel model, List<Cell> deletedCells) throws GRBException {
+        Utils.add(Utils.ilpTimes, 2, model.modelConstructionTime);
+        var start = System.nanoTime();
+        if (stale || cells.size() > ConfigParameter.incrementalIlpMaxCells) {
+            reset();
+        }
+
+        var graph = model.graph;
+        var roots = new int[deletedCells.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = graph.id(deletedCells.get(i));
+        }
+        var order = new int[graph.numCells()];
+        var orderSize = graph.postOrder(roots, order);
+        for (int i = 0; i < orderSize; i++) {
+            Utils.add(Utils.ilpTimes, 1, graph.instantiationTime[order[i]]);
+        }
+
+        // variables for cells that no earlier batch reached
+        var newCells = new ArrayList<Cell>();
+        for (int i = 0; i < orderSize; i++) {
+            var cell = graph.cells[order[i]];
+            if (!cell2Index.containsKey(cell)) {
+                cell2Index.put(cell, cells.size() + newCells.size());
+                newCells.add(cell);
+            }
+        }
+        if (!newCells.isEmpty()) {
+            var lb = new double[newCells.size()];
+            var ub = new double[newCells.size()];
+            var obj = new double[newCells.size()];
+            var types = new char[newCells.size()];
+            Arrays.fill(ub, 1);
+            Arrays.fill(obj, 1);
+            Arrays.fill(types, GRB.BINARY);
+            cells.addAll(newCells);
+            vars.addAll(Arrays.asList(grbModel.addVars(lb, ub, obj, types, null)));
+        }
+
+        // the cells requested by the previous batch are free again, unless they were erased in the meantime
+        var freed = new ArrayList<GRBVar>(requested.size());
+        for (var cell : requested) {
+            if (!erased.contains(cell)) {
+                freed.add(vars.get(cell2Index.get(cell)));
+            }
+        }
+        grbModel.set(GRB.DoubleAttr.LB, freed.toArray(new GRBVar[0]), new double[freed.size()]);
+        requested.clear();
+        requested.addAll(deletedCells);
+        var requestedVars = new GRBVar[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            requestedVars[i] = vars.get(cell2Index.get(graph.cells[roots[i]]));
+        }
+        var ones = new double[requestedVars.length];
+        Arrays.fill(ones, 1);
+        grbModel.set(GRB.DoubleAttr.LB, requestedVars, ones);
+
+        // align the edge constraints of every reached cell with the current closure
+        var newExprs = new ArrayList<GRBLinExpr>();
+        var newOwners = new ArrayList<Cell>();
+        var newKeys = new ArrayList<HashSet<Cell>>();
+        var toActivate = new ArrayList<GRBConstr>();
+        var toRelax = new ArrayList<GRBConstr>();
+        for (int i = 0; i < orderSize; i++) {
+            var curr = order[i];
+            var cell = graph.cells[curr];
+            if (erased.contains(cell)) {
+                continue;
+            }
+            var constrs = cell2Constrs.computeIfAbsent(cell, k -> new HashMap<>());
+            var currentEdges = new HashSet<HashSet<Cell>>();
+            for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                var members = new HashSet<Cell>();
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    members.add(graph.cells[graph.members[j]]);
+                }
+                currentEdges.add(members);
+                var constr = constrs.get(members);
+                if (constr == null) {
+                    var expr = new GRBLinExpr();
+                    for (var member : members) {
+                        expr.addTerm(1, vars.get(cell2Index.get(member)));
+                    }
+                    expr.addTerm(-1, vars.get(cell2Index.get(cell)));
+                    newExprs.add(expr);
+                    newOwners.add(cell);
+                    newKeys.add(members);
+                } else if (!activeConstrs.contains(constr)) {
+                    toActivate.add(constr);
+                }
+            }
+            for (var entry : constrs.entrySet()) {
+                if (!currentEdges.contains(entry.getKey()) && activeConstrs.contains(entry.getValue())) {
+                    toRelax.add(entry.getValue());
+                }
+            }
+        }
+        if (!newExprs.isEmpty()) {
+            var senses = new char[newExprs.size()];
+            Arrays.fill(senses, GRB.GREATER_EQUAL);
+            var added = grbModel.addConstrs(newExprs.toArray(new GRBLinExpr[0]), senses, new double[newExprs.size()], null);
+            for (int i = 0; i < added.length; i++) {
+                cell2Constrs.get(newOwners.get(i)).put(newKeys.get(i), added[i]);
+                activeConstrs.add(added[i]);
+            }
+        }
+        setRhs(toActivate, 0);
+        setRhs(toRelax, -1);
+
+        var stop = System.nanoTime();
+        Utils.add(Utils.ilpTimes, 2, stop - start);
+
+        // warm start: the tree dp selection for the current closure, every other cell stays undeleted
+        var startValues = new double[vars.size()];
+        for (var cell : erased) {
+            startValues[cell2Index.get(cell)] = 1;
+        }
+        for (var cell : graph.treeDpSelection(order, orderSize, roots)) {
+            startValues[cell2Index.get(graph.cells[cell])] = 1;
+        }
+        var allVars = vars.toArray(new GRBVar[0]);
+        grbModel.set(GRB.DoubleAttr.Start, allVars, startValues);
+
+        grbModel.optimize();
+
+        if (grbModel.get(GRB.IntAttr.Status) == GRB.Status.INFEASIBLE) {
+            throw new GRBException("Infeasible model");
+        }
+        if (grbModel.get(GRB.IntAttr.SolCount) == 0) {
+            throw new GRBException("No solution found");
+        }
+        Utils.addGap(grbModel.get(GRB.DoubleAttr.MIPGap));
+
+        var reachedVars = new GRBVar[orderSize];
+        for (int i = 0; i < orderSize; i++) {
+            reachedVars[i] = vars.get(cell2Index.get(graph.cells[order[i]]));
+        }
+        var values = grbModel.get(GRB.DoubleAttr.X, reachedVars);
+        var toDelete = new HashSet<Cell>();
+        for (int i = 0; i < orderSize; i++) {
+            if (values[i] > 0.5) {
+                toDelete.add(graph.cells[order[i]]);
+            }
+        }
+        Utils.add(Utils.ilpTimes, 3, System.nanoTime() - stop);
+        Utils.add(Utils.ilpCounts, 1, orderSize - deletedCells.size());
+
+        return toDelete;
+    }
+
+    // cells whose deletion persists count as deleted at no cost, fixing them to zero would let their edges demand another deletion
+    public void erase(Collection<Cell> erasedCells) throws GRBException {
+        var fixed = new ArrayList<GRBVar>();
+        var relaxed = new ArrayList<GRBConstr>();
+        for (var cell : erasedCells) {
+            var index = cell2Index.get(cell);
+            if (index == null || !erased.add(cell)) {
+                continue;
+            }
+            fixed.add(vars.get(index));
+            var constrs = cell2Constrs.get(cell);
+            if (constrs != null) {
+                for (var constr : constrs.values()) {
+                    if (activeConstrs.contains(constr)) {
+                        relaxed.add(constr);
+                    }
+                }
+            }
+        }
+        var fixedVars = fixed.toArray(new GRBVar[0]);
+        var ones = new double[fixedVars.length];
+        Arrays.fill(ones, 1);
+        grbModel.set(GRB.DoubleAttr.LB, fixedVars, ones);
+        grbModel.set(GRB.DoubleAttr.UB, fixedVars, ones);
+        grbModel.set(GRB.DoubleAttr.Obj, fixedVars, new double[fixedVars.length]);
+        setRhs(relaxed, -1);
+    }
+
+    void invalidate() {
+        stale = true;
+    }
+
+    public void dispose() throws GRBException {
+        grbModel.dispose();
+    }
+
+    private void setRhs(ArrayList<GRBConstr> constrs, double rhs) throws GRBException {
+        if (constrs.isEmpty()) {
+            return;
+        }
+        var values = new double[constrs.size()];
+        Arrays.fill(values, rhs);
+        grbModel.set(GRB.DoubleAttr.RHS, constrs.toArray(new GRBConstr[0]), values);
+        if (rhs == 0) {
+            activeConstrs.addAll(constrs);
+        } else {
+            activeConstrs.removeAll(constrs);
+        }
+    }
+}
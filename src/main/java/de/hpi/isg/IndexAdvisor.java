@@ -0,0 +1,166 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// derives the indexes that the rule queries rely on, checks them against the catalog, creates the missing ones if
+// createIndexes is set and explains every rule query
+// a rule query looks up the identifying cells by key, joins every table with its insertion time table on insertionKey,
+// filters by the insertion times of the rule attributes and joins the tables by the equalities of the condition
+public class IndexAdvisor {
+    private static final Pattern JOIN = Pattern.compile("(\\w+)\\.(\\w+)\\s*=\\s*(\\w+)\\.(\\w+)");
+
+    static final class Index {
+        final String table;
+        final String column;
+        // why the first rule that needs the index needs it
+        final String reason;
+
+        Index(String table, String column, String reason) {
+            this.table = table;
+            this.column = column;
+            this.reason = reason;
+        }
+
+        String name() {
+            return table + "_" + column + "_idx";
+        }
+    }
+
+    private final Instatiator instatiator;
+
+    public IndexAdvisor(Instatiator instatiator) {
+        this.instatiator = instatiator;
+    }
+
+    // single column indexes in the order of the rules, keyed by table.column in lower case
+    static LinkedHashMap<String, Index> requiredIndexes(Collection<Rule> rules, HashMap<String, String> tableName2keyCol) {
+        var indexes = new LinkedHashMap<String, Index>();
+        for (var rule : rules) {
+            for (var table : rule.tables) {
+                add(indexes, table, tableName2keyCol.get(table), "key of " + rule);
+                add(indexes, table + Instatiator.IT_SUFFIX, "insertionKey", "insertion times of " + rule);
+            }
+            add(indexes, rule.head.table + Instatiator.IT_SUFFIX, rule.head.attribute, "insertion time filter of " + rule);
+            for (var attribute : rule.tail) {
+                add(indexes, attribute.table + Instatiator.IT_SUFFIX, attribute.attribute, "insertion time filter of " + rule);
+            }
+            if (rule.condition == null) {
+                continue;
+            }
+            var matcher = JOIN.matcher(rule.condition);
+            while (matcher.find()) {
+                var leftTable = rule.table2Alias.get(matcher.group(1));
+                var rightTable = rule.table2Alias.get(matcher.group(3));
+                // a column compared with a column of the same row is no join
+                if (leftTable == null || rightTable == null || matcher.group(1).equals(matcher.group(3))) {
+                    continue;
+                }
+                add(indexes, leftTable, matcher.group(2), "join of " + rule);
+                add(indexes, rightTable, matcher.group(4), "join of " + rule);
+            }
+        }
+        return indexes;
+    }
+
+    private static void add(LinkedHashMap<String, Index> indexes, String table, String column, String reason) {
+        indexes.putIfAbsent((table + "." + column).toLowerCase(), new Index(table, column, reason));
+    }
+
+    // lower case columns that lead an index of the table, an index on more columns serves lookups of its first column
+    HashSet<String> indexedColumns(String table) throws SQLException {
+        var columns = new HashSet<String>();
+        try (var rs = instatiator.c.getMetaData().getIndexInfo(null, null, instatiator.storage.catalogName(table), false, true)) {
+            while (rs.next()) {
+                var column = rs.getString("COLUMN_NAME");
+                if (column != null && rs.getShort("ORDINAL_POSITION") == 1) {
+                    columns.add(column.toLowerCase());
+                }
+            }
+        }
+        return columns;
+    }
+
+    public void advise(Collection<Rule> rules) throws SQLException {
+        var table2Indexed = new HashMap<String, HashSet<String>>();
+        var createdTables = new TreeSet<String>();
+        System.out.println("Table,Column,State,Reason");
+        for (var index : requiredIndexes(rules, instatiator.tableName2keyCol).values()) {
+            var indexed = table2Indexed.get(index.table);
+            if (indexed == null) {
+                indexed = indexedColumns(index.table);
+                table2Indexed.put(index.table, indexed);
+            }
+            String state;
+            if (indexed.contains(index.column.toLowerCase())) {
+                state = "present";
+            } else if (ConfigParameter.createIndexes) {
+                instatiator.statement.execute("CREATE INDEX IF NOT EXISTS " + index.name() + " ON " + index.table + " (" + index.column + ")");
+                indexed.add(index.column.toLowerCase());
+                createdTables.add(index.table);
+                state = "created";
+            } else {
+                state = "missing";
+            }
+            System.out.println(index.table + "," + index.column + "," + state + "," + index.reason);
+        }
+        // the planner only picks up the new indexes with fresh statistics
+        for (var table : createdTables) {
+            instatiator.statement.execute(instatiator.storage.analyze(table));
+        }
+        instatiator.c.commit();
+        explain();
+    }
+
+    // the batched query of every rule and identifying table, with numKeys sampled keys and every insertion time
+    void explain() throws SQLException {
+        System.out.println("Rule,Table,Plan");
+        // tables explained per rule
+        var explained = new IdentityHashMap<Rule, HashSet<String>>();
+        for (var connectedRules : List.of(instatiator.attributeInHead, instatiator.attributeInTail)) {
+            for (var entry : connectedRules.entrySet()) {
+                var attribute = entry.getKey();
+                for (var rule : entry.getValue()) {
+                    if (!explained.computeIfAbsent(rule, r -> new HashSet<>()).add(attribute.table)) {
+                        continue;
+                    }
+                    var keys = instatiator.getKeys(attribute);
+                    instatiator.c.commit();
+                    try (var stmt = instatiator.c.prepareStatement("EXPLAIN " + instatiator.ruleToQuery(rule, attribute.table, true))) {
+                        stmt.setArray(1, instatiator.storage.keyArray(instatiator.c, keys));
+                        for (int i = 0; i <= rule.tail.size(); i++) {
+                            stmt.setLong(i + 2, Long.MIN_VALUE);
+                        }
+                        var plan = new StringBuilder();
+                        try (var rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                plan.append(rs.getString(1)).append('\n');
+                            }
+                        }
+                        System.out.println(rule + "," + attribute.table + "," + instatiator.storage.planCost(plan.toString()));
+                    }
+                }
+            }
+        }
+        instatiator.c.commit();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configFilePath = args.length > 0 ? args[0] : "config.json";
+        Main.parseConfigFile(Files.readString(Paths.get(configFilePath)));
+        Main.parseRules();
+        Main.parseSchema();
+        Main.parseDerivedData();
+
+        var allRules = new ArrayList<>(Main.rules);
+        allRules.addAll(Main.derivedData);
+        var instatiator = new Instatiator(Main.attributeInHead, Main.attributeInTail, Main.tableName2keyCol);
+        new IndexAdvisor(instatiator).advise(allRules);
+        instatiator.c.close();
+    }
+}
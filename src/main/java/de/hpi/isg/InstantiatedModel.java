@@ -11,6 +11,7 @@ public class InstantiatedModel {
     LinkedList<HashSet<Cell>> treeLevels = new LinkedList<>();
     HashMap<Cell, HashSet<Cell>> cell2Parents = new HashMap<>();
     long modelConstructionTime = 0L;
+    CompactHypergraph graph;
 
     static boolean containsParent(Cell.HyperEdge edge, HashSet<Cell> parents) {
         for (var cell : edge) {
@@ -50,11 +51,13 @@ public class InstantiatedModel {
 
             while (!currLevel.isEmpty()) {
                 HashMap<Cell, HashSet<Cell>> localCell2Parents = new HashMap<>();
+                var instantiationStart = System.nanoTime();
+                var levelResult = instatiator.instantiateAttachedCells(currLevel, deleted.insertionTime);
+                // the level is instantiated at once, so every cell gets an equal share of the time
+                var levelTime = (System.nanoTime() - instantiationStart) / currLevel.size();
                 for (var curr : currLevel) {
-                    var instantiationStart = System.nanoTime();
-                    var result = instatiator.instantiateAttachedCells(curr, deleted.insertionTime);
-                    instantiationTime.put(curr, System.nanoTime() - instantiationStart);
-                    for (var edge : result) {
+                    instantiationTime.put(curr, levelTime);
+                    for (var edge : levelResult.get(curr)) {
                         if (!containsParent(edge, cell2Parents.get(curr))) {
                             var cellIter = edge.iterator();
                             var newCells = new ArrayList<Cell>(edge.size());
@@ -88,8 +91,40 @@ public class InstantiatedModel {
                 currLevel = nextLevel;
                 nextLevel = new HashSet<>();
             }
-            modelConstructionTime = System.nanoTime() - start;
         }
+        graph = new CompactHypergraph(this);
+        modelConstructionTime = System.nanoTime() - start;
+    }
+
+    // the part of a model that holds the cells ids[from] until ids[to], which are ascending ids of the graph of the model
+    InstantiatedModel(InstantiatedModel model, int[] ids, int from, int to) {
+        var start = System.nanoTime();
+        int level = -1;
+        HashSet<Cell> currLevel = null;
+        for (int i = from; i < to; i++) {
+            var cell = model.graph.cells[ids[i]];
+            var cellLevel = model.graph.level(ids[i]);
+            if (cellLevel != level) {
+                currLevel = new HashSet<>();
+                treeLevels.addLast(currLevel);
+                level = cellLevel;
+            }
+            currLevel.add(cell);
+            var edges = model.cell2Edge.get(cell);
+            if (edges != null) {
+                cell2Edge.put(cell, edges);
+            }
+            var time = model.instantiationTime.get(cell);
+            if (time != null) {
+                instantiationTime.put(cell, time);
+            }
+            var parents = model.cell2Parents.get(cell);
+            if (parents != null) {
+                cell2Parents.put(cell, parents);
+            }
+        }
+        graph = new CompactHypergraph(this);
+        modelConstructionTime = System.nanoTime() - start;
     }
 
 }
@@ -0,0 +1,216 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.util.*;
+
+// raw edges per cell and rule, instantiated once for every source insertion time and filtered for each query
+// the cache holds at most capacity edges, a new entry only replaces the least recently used entries
+// if it was asked for more often than each of them (TinyLFU admission)
+public class InstantiationCache {
+    static final class Key {
+        final Cell cell;
+        final Rule rule;
+        final int hash;
+
+        Key(Cell cell, Rule rule) {
+            this.cell = cell;
+            this.rule = rule;
+            hash = cell.hashCode() * 31 + System.identityHashCode(rule);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            var key = (Key) o;
+            return rule == key.rule && cell.equals(key.cell);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // count min sketch of the requests with 4 bit counters, all counters are halved after 10 requests per counter
+    // so that cells that were hot long ago do not keep their entries
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private final byte[][] counters = new byte[DEPTH][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(long capacity) {
+            var width = Integer.highestOneBit((int) Math.max(64, Math.min(capacity, 1 << 20)) - 1) << 1;
+            for (int row = 0; row < DEPTH; row++) {
+                counters[row] = new byte[width];
+            }
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        private int index(int hash, int row) {
+            var h = (hash + row) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        void increment(int hash) {
+            for (int row = 0; row < DEPTH; row++) {
+                var idx = index(hash, row);
+                if (counters[row][idx] < MAX_COUNT) {
+                    counters[row][idx]++;
+                }
+            }
+            if (++additions == sampleSize) {
+                for (var row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+    }
+
+    private final long capacity;
+    // least recently used first
+    private final LinkedHashMap<Key, ArrayList<HyperEdge>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Cell, HashSet<Key>> member2Keys = new HashMap<>();
+    private final HashSet<String> conditionColumns;
+    private final FrequencySketch sketch;
+    // cached edges
+    private long size = 0;
+    long hits = 0;
+    long misses = 0;
+    long admissions = 0;
+    long rejections = 0;
+    long evictions = 0;
+    long invalidations = 0;
+
+    public InstantiationCache(Collection<Rule> rules, long capacity) {
+        this.capacity = capacity;
+        conditionColumns = DependencyGraphCache.conditionColumns(rules);
+        sketch = new FrequencySketch(capacity);
+    }
+
+    // the raw edges, or null if the rule has to be instantiated for the cell
+    synchronized ArrayList<HyperEdge> get(Cell cell, Rule rule) {
+        var key = new Key(cell, rule);
+        sketch.increment(key.hash);
+        var rawEdges = entries.get(key);
+        if (rawEdges == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return rawEdges;
+    }
+
+    synchronized void put(Cell cell, Rule rule, ArrayList<HyperEdge> rawEdges) {
+        var key = new Key(cell, rule);
+        var weight = weight(rawEdges);
+        if (weight > capacity) {
+            rejections++;
+            return;
+        }
+        removeEntry(key);
+        if (size + weight > capacity) {
+            var frequency = sketch.frequency(key.hash);
+            var victims = new ArrayList<Key>();
+            long freed = 0;
+            for (var entry : entries.entrySet()) {
+                if (size - freed + weight <= capacity) {
+                    break;
+                }
+                if (sketch.frequency(entry.getKey().hash) >= frequency) {
+                    rejections++;
+                    return;
+                }
+                victims.add(entry.getKey());
+                freed += weight(entry.getValue());
+            }
+            for (var victim : victims) {
+                removeEntry(victim);
+                evictions++;
+            }
+        }
+        entries.put(key, rawEdges);
+        size += weight;
+        admissions++;
+        for (var edge : rawEdges) {
+            for (var member : edge) {
+                member2Keys.computeIfAbsent(member, k -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    // drops every entry with an edge that contains one of the changed cells
+    synchronized void invalidate(Collection<Cell> changed) {
+        for (var cell : changed) {
+            if (conditionColumns.contains(cell.attribute.table + "." + cell.attribute.attribute)) {
+                invalidations += entries.size();
+                entries.clear();
+                member2Keys.clear();
+                size = 0;
+                return;
+            }
+        }
+        for (var cell : changed) {
+            var keys = member2Keys.remove(cell);
+            if (keys != null) {
+                for (var key : keys) {
+                    if (removeEntry(key)) {
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long weight(ArrayList<HyperEdge> rawEdges) {
+        // an empty result is cached as well and takes the place of one edge
+        return Math.max(1, rawEdges.size());
+    }
+
+    private boolean removeEntry(Key key) {
+        var rawEdges = entries.remove(key);
+        if (rawEdges == null) {
+            return false;
+        }
+        size -= weight(rawEdges);
+        for (var edge : rawEdges) {
+            for (var member : edge) {
+                var keys = member2Keys.get(member);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        member2Keys.remove(member);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        var requests = hits + misses;
+        return "instantiation cache: " + entries.size() + " entries, " + size + " edges, hit ratio " + (requests == 0 ? 0 : (double) hits / requests)
+                + ", hits " + hits + ", misses " + misses + ", admissions " + admissions + ", rejections " + rejections
+                + ", evictions " + evictions + ", invalidations " + invalidations;
+    }
+}
@@ -7,7 +7,6 @@ import de.hpi.isg.RelationalDependencyRules.Cell;
 import de.hpi.isg.RelationalDependencyRules.Attribute;
 import de.hpi.isg.RelationalDependencyRules.Rule;
 import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
-import org.postgresql.util.PGobject;
 
 
 public class Instatiator {
@@ -16,16 +15,69 @@ public class Instatiator {
     final HashMap<String, String> tableName2keyCol;
     final ArrayList<Rule> EMPTY_LIST = new ArrayList<>(0);
     public final Statement statement;
-    final String IT_SUFFIX = "_insertiontime";
+    static final String IT_SUFFIX = "_insertiontime";
+    final Storage storage;
     final Connection c;
+    // rule -> table of the identifying cell -> compiled rule query
+    final HashMap<Rule, HashMap<String, PreparedStatement>> ruleStatements = new HashMap<>();
+    final HashMap<Rule, HashMap<String, PreparedStatement>> batchRuleStatements = new HashMap<>();
+    final HashMap<String, String> tableName2keyType = new HashMap<>();
+    final HashMap<Attribute, PreparedStatement> completeStatements = new HashMap<>();
+    final HashMap<String, PreparedStatement> bulkCompleteStatements = new HashMap<>();
+    // statement text -> statement, as rows are nulled by table and set of attributes
+    final HashMap<String, PreparedStatement> nullStatements = new HashMap<>();
+    final HashMap<Attribute, PreparedStatement> resetStatements = new HashMap<>();
+    DependencyGraphCache graphCache;
+    InstantiationCache instantiationCache;
 
     public Instatiator(HashMap<Attribute, ArrayList<Rule>> attributeInHead, HashMap<Attribute, ArrayList<Rule>> attributeInTail, HashMap<String, String> tableName2keyCol) throws SQLException {
         this.attributeInHead = attributeInHead;
         this.attributeInTail = attributeInTail;
         this.tableName2keyCol = tableName2keyCol;
-        c = DriverManager.getConnection(ConfigParameter.connectionUrl + ConfigParameter.database, ConfigParameter.username, ConfigParameter.password);
+        storage = Storage.fromConfig();
+        c = storage.connect();
         c.setAutoCommit(false);
         statement = c.createStatement();
+        prepareRules(attributeInHead);
+        prepareRules(attributeInTail);
+    }
+
+    // for instantiators that do not query a database, like the in memory models of the benchmarks
+    Instatiator() {
+        attributeInHead = new HashMap<>();
+        attributeInTail = new HashMap<>();
+        tableName2keyCol = new HashMap<>();
+        storage = null;
+        c = null;
+        statement = null;
+    }
+
+    private void prepareRules(HashMap<Attribute, ArrayList<Rule>> connectedRules) throws SQLException {
+        for (var entry : connectedRules.entrySet()) {
+            for (var rule : entry.getValue()) {
+                ruleStatement(rule, entry.getKey().table, false);
+                ruleStatement(rule, entry.getKey().table, true);
+            }
+        }
+    }
+
+    private PreparedStatement ruleStatement(Rule rule, String table, boolean batched) throws SQLException {
+        var table2Statement = (batched ? batchRuleStatements : ruleStatements).computeIfAbsent(rule, r -> new HashMap<>(2));
+        var stmt = table2Statement.get(table);
+        if (stmt == null) {
+            stmt = c.prepareStatement(ruleToQuery(rule, table, batched));
+            table2Statement.put(table, stmt);
+        }
+        return stmt;
+    }
+
+    private String keyType(String table) throws SQLException {
+        var type = tableName2keyType.get(table);
+        if (type == null) {
+            type = storage.keyType(c, table, tableName2keyCol.get(table));
+            tableName2keyType.put(table, type);
+        }
+        return type;
     }
 
     public ArrayList<HyperEdge> instantiateAttachedCells(Cell start, long sourceInsertionTime) throws SQLException {
@@ -37,56 +89,304 @@ public class Instatiator {
 
     public void iterateRules(Cell start, long sourceInsertionTime, ArrayList<HyperEdge> result, HashMap<Attribute, ArrayList<Rule>> connectedRules) throws SQLException {
         for (var rule : connectedRules.getOrDefault(start.attribute, EMPTY_LIST)) {
-            try (var rs = queryRule(rule, start, sourceInsertionTime)) {
-                result.addAll(resultSetToCellList(rule, start, rs, sourceInsertionTime));
+            if (instantiationCache == null) {
+                instantiateRule(rule, start, sourceInsertionTime, result);
+            } else {
+                instantiateCachedRule(rule, start, sourceInsertionTime, result);
             }
         }
     }
 
-    public ArrayList<HyperEdge> resultSetToCellList(Rule rule, Cell start, ResultSet resultSet, long sourceInsertionTime) throws SQLException {
-        var result = new ArrayList<HyperEdge>();
-        while (resultSet.next()) {
-            HashMap<String, String> table2Key = new HashMap<>(rule.tables.size(), 1f);
-            int columnIdx = 1;
-            for (int tableIdx = 0; tableIdx < rule.tables.size(); tableIdx++) {
-                table2Key.put(rule.tables.get(tableIdx), resultSet.getString(columnIdx++));
-            }
-
-            if (rule.head.equals(start.attribute)) {
-                // if start == head, then all other cells need to be connected
-                columnIdx += 2;
-                var list = new HyperEdge(rule.tail.size());
-                boolean anyNull = false;
-                for (int tailIdx = 0; tailIdx < rule.tail.size(); tailIdx++) {
-                    var currAttr = rule.tail.get(tailIdx);
-                    var val = resultSet.getString(columnIdx++);
-                    var it = resultSet.getLong(columnIdx++);
-                    if (val == null) {
-                        anyNull = true;
-                        break;
-                    }
-                    if (it >= sourceInsertionTime) {
-                        list.add(new Cell(currAttr, table2Key.get(currAttr.table), val));
-                    }
+    void instantiateRule(Rule rule, Cell start, long sourceInsertionTime, ArrayList<HyperEdge> result) throws SQLException {
+        try (var rs = queryRule(rule, start, sourceInsertionTime)) {
+            result.addAll(resultSetToCellList(rule, start, rs, sourceInsertionTime));
+        }
+    }
+
+    // the raw edges of a cell and rule are instantiated for every source insertion time, so they serve any later query
+    void instantiateCachedRule(Rule rule, Cell start, long sourceInsertionTime, ArrayList<HyperEdge> result) throws SQLException {
+        var rawEdges = instantiationCache.get(start, rule);
+        if (rawEdges == null) {
+            rawEdges = new ArrayList<>();
+            var key2Cells = new HashMap<String, ArrayList<Cell>>(1);
+            key2Cells.put(start.key, new ArrayList<>(List.of(start)));
+            var rawResult = new HashMap<Cell, ArrayList<HyperEdge>>(1);
+            rawResult.put(start, rawEdges);
+            instantiateRule(rule, start.attribute, List.of(start.key), key2Cells, Long.MIN_VALUE, rawResult, true);
+            instantiationCache.put(start, rule, rawEdges);
+        }
+        for (var rawEdge : rawEdges) {
+            var edge = DependencyGraphCache.filterEdge(rawEdge, sourceInsertionTime);
+            if (edge != null) {
+                result.add(edge);
+            }
+        }
+    }
+
+    // rolls back what is not committed and closes the connection
+    public void close() throws SQLException {
+        if (c != null) {
+            c.close();
+        }
+    }
+
+    public void useGraphCache(DependencyGraphCache graphCache) {
+        this.graphCache = graphCache;
+    }
+
+    public void useInstantiationCache(InstantiationCache instantiationCache) {
+        this.instantiationCache = instantiationCache;
+    }
+
+    static class KeyChunk {
+        final Attribute attribute;
+        final List<String> keys;
+        final HashMap<String, ArrayList<Cell>> key2Cells;
+
+        KeyChunk(Attribute attribute, List<String> keys, HashMap<String, ArrayList<Cell>> key2Cells) {
+            this.attribute = attribute;
+            this.keys = keys;
+            this.key2Cells = key2Cells;
+        }
+    }
+
+    static ArrayList<KeyChunk> chunkByAttribute(Collection<Cell> cells, int chunkSize) {
+        var attribute2Key2Cells = new HashMap<Attribute, LinkedHashMap<String, ArrayList<Cell>>>();
+        for (var cell : cells) {
+            attribute2Key2Cells.computeIfAbsent(cell.attribute, a -> new LinkedHashMap<>()).computeIfAbsent(cell.key, k -> new ArrayList<>(1)).add(cell);
+        }
+        var chunks = new ArrayList<KeyChunk>();
+        for (var entry : attribute2Key2Cells.entrySet()) {
+            var keys = new ArrayList<>(entry.getValue().keySet());
+            for (int from = 0; from < keys.size(); from += chunkSize) {
+                chunks.add(new KeyChunk(entry.getKey(), keys.subList(from, Math.min(keys.size(), from + chunkSize)), entry.getValue()));
+            }
+        }
+        return chunks;
+    }
+
+    // one query per rule and chunk of keys instead of one query per rule and cell
+    public HashMap<Cell, ArrayList<HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) throws SQLException {
+        var result = new HashMap<Cell, ArrayList<HyperEdge>>(cells.size());
+        for (var chunk : chunkByAttribute(cells, ConfigParameter.instantiationBatchSize)) {
+            instantiateChunk(chunk, sourceInsertionTime, result);
+        }
+        return result;
+    }
+
+    void instantiateChunk(KeyChunk chunk, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result) throws SQLException {
+        if (graphCache == null) {
+            for (var key : chunk.keys) {
+                for (var cell : chunk.key2Cells.get(key)) {
+                    result.put(cell, new ArrayList<>());
+                }
+            }
+            iterateRules(chunk.attribute, chunk.keys, chunk.key2Cells, sourceInsertionTime, result, attributeInHead, false);
+            iterateRules(chunk.attribute, chunk.keys, chunk.key2Cells, sourceInsertionTime, result, attributeInTail, false);
+            return;
+        }
+
+        // only cells without a usable cached neighbourhood are queried
+        var missingKeys = new ArrayList<String>();
+        for (var key : chunk.keys) {
+            var cells = chunk.key2Cells.get(key);
+            // the equal cells of a key share one entry, it must not be evicted in between
+            synchronized (graphCache) {
+                var cached = graphCache.get(cells.get(0), sourceInsertionTime);
+                if (cached == null) {
+                    missingKeys.add(key);
+                    continue;
                 }
-                if (!anyNull && !list.isEmpty()) {
-                    result.add(list);
+                result.put(cells.get(0), cached);
+                for (int i = 1; i < cells.size(); i++) {
+                    result.put(cells.get(i), graphCache.get(cells.get(i), sourceInsertionTime));
                 }
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return;
+        }
+        var rawResult = new HashMap<Cell, ArrayList<HyperEdge>>(missingKeys.size());
+        for (var key : missingKeys) {
+            rawResult.put(chunk.key2Cells.get(key).get(0), new ArrayList<>());
+        }
+        iterateRules(chunk.attribute, missingKeys, chunk.key2Cells, sourceInsertionTime, rawResult, attributeInHead, true);
+        iterateRules(chunk.attribute, missingKeys, chunk.key2Cells, sourceInsertionTime, rawResult, attributeInTail, true);
+        for (var key : missingKeys) {
+            var cells = chunk.key2Cells.get(key);
+            var rawEdges = rawResult.get(cells.get(0));
+            graphCache.put(cells.get(0), sourceInsertionTime, rawEdges);
+            for (var cell : cells) {
+                result.put(cell, DependencyGraphCache.filterEdges(rawEdges, sourceInsertionTime));
+            }
+        }
+    }
+
+    public void iterateRules(Attribute attribute, List<String> keys, HashMap<String, ArrayList<Cell>> key2Cells, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result, HashMap<Attribute, ArrayList<Rule>> connectedRules, boolean raw) throws SQLException {
+        for (var rule : connectedRules.getOrDefault(attribute, EMPTY_LIST)) {
+            if (instantiationCache == null) {
+                instantiateRule(rule, attribute, keys, key2Cells, sourceInsertionTime, result, raw);
+            } else {
+                instantiateCachedRule(rule, attribute, keys, key2Cells, sourceInsertionTime, result, raw);
+            }
+        }
+    }
+
+    // only keys without cached edges for the rule are queried, in one query
+    void instantiateCachedRule(Rule rule, Attribute attribute, List<String> keys, HashMap<String, ArrayList<Cell>> key2Cells, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result, boolean raw) throws SQLException {
+        var missingKeys = new ArrayList<String>();
+        for (var key : keys) {
+            var starts = key2Cells.get(key);
+            var rawEdges = instantiationCache.get(starts.get(0), rule);
+            if (rawEdges == null) {
+                missingKeys.add(key);
+            } else {
+                addCachedEdges(rawEdges, starts, sourceInsertionTime, result, raw);
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return;
+        }
+        // the raw edges are queried for the first cell of a key only, the other cells get theirs from the cache entry
+        var key2First = new HashMap<String, ArrayList<Cell>>(missingKeys.size());
+        var rawResult = new HashMap<Cell, ArrayList<HyperEdge>>(missingKeys.size());
+        for (var key : missingKeys) {
+            var first = key2Cells.get(key).get(0);
+            key2First.put(key, new ArrayList<>(List.of(first)));
+            rawResult.put(first, new ArrayList<>());
+        }
+        instantiateRule(rule, attribute, missingKeys, key2First, Long.MIN_VALUE, rawResult, true);
+        for (var key : missingKeys) {
+            var starts = key2Cells.get(key);
+            var rawEdges = rawResult.get(starts.get(0));
+            instantiationCache.put(starts.get(0), rule, rawEdges);
+            addCachedEdges(rawEdges, starts, sourceInsertionTime, result, raw);
+        }
+    }
+
+    private static void addCachedEdges(ArrayList<HyperEdge> rawEdges, ArrayList<Cell> starts, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result, boolean raw) {
+        for (var rawEdge : rawEdges) {
+            HyperEdge edge;
+            if (raw) {
+                edge = new HyperEdge(rawEdge.size());
+                edge.addAll(rawEdge);
             } else {
-                // if start is in tail, only the head is interesting to us
-                var val = resultSet.getString(columnIdx++);
-                var it = resultSet.getLong(columnIdx);
-                if (val != null && it >= sourceInsertionTime) {
-                    var list = new HyperEdge(1);
-                    list.add(new Cell(rule.head, table2Key.get(rule.head.table), val));
-                    result.add(list);
+                edge = DependencyGraphCache.filterEdge(rawEdge, sourceInsertionTime);
+            }
+            if (edge != null) {
+                addEdge(edge, starts, result);
+            }
+        }
+    }
+
+    void instantiateRule(Rule rule, Attribute attribute, List<String> keys, HashMap<String, ArrayList<Cell>> key2Cells, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result, boolean raw) throws SQLException {
+        var keyIdx = rule.tables.indexOf(attribute.table) + 1;
+        var isHead = rule.head.equals(attribute);
+        try (var rs = queryRule(rule, attribute, keys, sourceInsertionTime)) {
+            while (rs.next()) {
+                var edge = rowToEdge(rule, isHead, rs, sourceInsertionTime, raw);
+                if (edge != null) {
+                    addEdge(edge, key2Cells.get(rs.getString(keyIdx)), result);
                 }
             }
         }
+    }
+
+    // the first start cell gets the edge itself, cells sharing its key get copies
+    static void addEdge(HyperEdge edge, ArrayList<Cell> starts, HashMap<Cell, ArrayList<HyperEdge>> result) {
+        result.get(starts.get(0)).add(edge);
+        for (int i = 1; i < starts.size(); i++) {
+            var startEdges = result.get(starts.get(i));
+            if (startEdges != null) {
+                var copy = new HyperEdge(edge.size());
+                copy.addAll(edge);
+                startEdges.add(copy);
+            }
+        }
+    }
+
+    public ArrayList<HyperEdge> resultSetToCellList(Rule rule, Cell start, ResultSet resultSet, long sourceInsertionTime) throws SQLException {
+        var result = new ArrayList<HyperEdge>();
+        var isHead = rule.head.equals(start.attribute);
+        while (resultSet.next()) {
+            var edge = rowToEdge(rule, isHead, resultSet, sourceInsertionTime, false);
+            if (edge != null) {
+                result.add(edge);
+            }
+        }
         return result;
     }
 
+    private HyperEdge rowToEdge(Rule rule, boolean isHead, ResultSet resultSet, long sourceInsertionTime, boolean raw) throws SQLException {
+        var keys = new String[rule.tables.size()];
+        int columnIdx = 1;
+        for (int tableIdx = 0; tableIdx < keys.length; tableIdx++) {
+            keys[tableIdx] = resultSet.getString(columnIdx++);
+        }
+        // index 0 is the head, the tail follows
+        var values = new String[rule.tail.size() + 1];
+        var insertionTimes = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = resultSet.getString(columnIdx++);
+            insertionTimes[i] = resultSet.getLong(columnIdx++);
+        }
+        return toEdge(rule, isHead, keys, values, insertionTimes, sourceInsertionTime, raw);
+    }
+
+    // a raw edge keeps null values and cells inserted before the source, so that it can be filtered later on
+    static HyperEdge toEdge(Rule rule, boolean isHead, String[] keys, String[] values, long[] insertionTimes, long sourceInsertionTime, boolean raw) {
+        if (isHead) {
+            // if start == head, then all other cells need to be connected
+            var list = new HyperEdge(rule.tail.size());
+            for (int tailIdx = 0; tailIdx < rule.tail.size(); tailIdx++) {
+                var currAttr = rule.tail.get(tailIdx);
+                var val = values[tailIdx + 1];
+                var it = insertionTimes[tailIdx + 1];
+                if (val == null && !raw) {
+                    return null;
+                }
+                if (raw || it >= sourceInsertionTime) {
+                    var cell = new Cell(currAttr, keys[rule.tables.indexOf(currAttr.table)], val);
+                    cell.insertionTime = it;
+                    list.add(cell);
+                }
+            }
+            return list.isEmpty() ? null : list;
+        } else {
+            // if start is in tail, only the head is interesting to us
+            var val = values[0];
+            var it = insertionTimes[0];
+            if (raw || (val != null && it >= sourceInsertionTime)) {
+                var list = new HyperEdge(1);
+                var cell = new Cell(rule.head, keys[rule.tables.indexOf(rule.head.table)], val);
+                cell.insertionTime = it;
+                list.add(cell);
+                return list;
+            }
+            return null;
+        }
+    }
+
     public ResultSet queryRule(Rule rule, Cell identifier, long sourceInsertionTime) throws SQLException {
+        var stmt = ruleStatement(rule, identifier.attribute.table, false);
+        stmt.setString(1, identifier.key);
+        return bindInsertionTime(stmt, rule, sourceInsertionTime).executeQuery();
+    }
+
+    public ResultSet queryRule(Rule rule, Attribute identifier, List<String> keys, long sourceInsertionTime) throws SQLException {
+        var stmt = ruleStatement(rule, identifier.table, true);
+        stmt.setArray(1, storage.keyArray(c, keys));
+        return bindInsertionTime(stmt, rule, sourceInsertionTime).executeQuery();
+    }
+
+    private PreparedStatement bindInsertionTime(PreparedStatement stmt, Rule rule, long sourceInsertionTime) throws SQLException {
+        for (int i = 0; i <= rule.tail.size(); i++) {
+            stmt.setLong(i + 2, sourceInsertionTime);
+        }
+        return stmt;
+    }
+
+    String ruleToQuery(Rule rule, String identifierTable, boolean batched) throws SQLException {
         ArrayList<String> tableStrings = new ArrayList<>(rule.tables.size());
         ArrayList<String> itJoinStrings = new ArrayList<>(rule.tables.size());
         for (var table : rule.tables) {
@@ -95,18 +395,18 @@ public class Instatiator {
             tableStrings.add(table + IT_SUFFIX + " " + alias + IT_SUFFIX);
             itJoinStrings.add(alias + "." + tableName2keyCol.get(table) + " = " + alias + IT_SUFFIX + ".insertionKey");
         }
-        var idQuery = rule.table2Alias.get(identifier.attribute.table) + "." + tableName2keyCol.get(identifier.attribute.table) + " = '" + identifier.key + "'";
-        var finalQuery = "SELECT " + String.join(", ", ruleToColumnNames(rule)) + " FROM " + String.join(", ", tableStrings) + " WHERE " + idQuery + " AND " + String.join(" AND ", itJoinStrings) + " AND (" + String.join(" OR ", ruleToItQuery(rule, sourceInsertionTime)) + ") AND " + rule.condition;
+        var keyColumn = rule.table2Alias.get(identifierTable) + "." + tableName2keyCol.get(identifierTable);
+        var idQuery = batched ? storage.anyKey(keyColumn, keyType(identifierTable)) : keyColumn + " = ?";
         // OR insertionTime > identifier. insertionTime => ONLY create cells from later insertionTime
         // ONLY check rules where all cells are not null
-        return statement.executeQuery(finalQuery);
+        return "SELECT " + String.join(", ", ruleToColumnNames(rule)) + " FROM " + String.join(", ", tableStrings) + " WHERE " + idQuery + " AND " + String.join(" AND ", itJoinStrings) + " AND (" + String.join(" OR ", ruleToItQuery(rule)) + ") AND " + rule.condition;
     }
 
-    private ArrayList<String> ruleToItQuery(Rule rule, long insertionTime) {
+    private ArrayList<String> ruleToItQuery(Rule rule) {
         var queries = new ArrayList<String>(rule.tail.size() + 1);
-        queries.add(attributeToColumnName(rule.head, rule.table2Alias, true) + " >= " + insertionTime);
+        queries.add(attributeToColumnName(rule.head, rule.table2Alias, true) + " >= ?");
         for (Attribute attribute : rule.tail) {
-            queries.add(attributeToColumnName(attribute, rule.table2Alias, true) + " >= " + insertionTime);
+            queries.add(attributeToColumnName(attribute, rule.table2Alias, true) + " >= ?");
         }
         return queries;
     }
@@ -130,62 +430,136 @@ public class Instatiator {
     }
 
     public Cell completeCell(Cell cell) throws SQLException {
-        var keyCol = tableName2keyCol.get(cell.attribute.table);
-        var attr = cell.attribute.attribute;
-        var a = "SELECT a." + attr + ", b." + attr + " FROM " + cell.attribute.table + " a, " + cell.attribute.table + IT_SUFFIX + " b WHERE a." + keyCol + " = '" + cell.key + "' AND a." + keyCol + " = b.insertionKey";
-        var rs = statement.executeQuery(a);
-        if (rs.next()) {
-            cell.value = rs.getString(1);
-            cell.insertionTime = rs.getLong(2);
+        var stmt = completeStatements.get(cell.attribute);
+        if (stmt == null) {
+            var keyCol = tableName2keyCol.get(cell.attribute.table);
+            var attr = cell.attribute.attribute;
+            stmt = c.prepareStatement("SELECT a." + attr + ", b." + attr + " FROM " + cell.attribute.table + " a, " + cell.attribute.table + IT_SUFFIX + " b WHERE a." + keyCol + " = ? AND a." + keyCol + " = b.insertionKey");
+            completeStatements.put(cell.attribute, stmt);
         }
-        if (rs.next()) {
-            throw new SQLException("Non-unique key!");
+        stmt.setString(1, cell.key);
+        try (var rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                cell.value = rs.getString(1);
+                cell.insertionTime = rs.getLong(2);
+            }
+            if (rs.next()) {
+                throw new SQLException("Non-unique key!");
+            }
         }
         return cell;
     }
 
+    public void completeCells(Collection<Cell> cells) throws SQLException {
+        var table2Key2Cells = new HashMap<String, HashMap<String, ArrayList<Cell>>>();
+        var table2Attributes = new HashMap<String, TreeSet<String>>();
+        for (var cell : cells) {
+            table2Key2Cells.computeIfAbsent(cell.attribute.table, t -> new HashMap<>()).computeIfAbsent(cell.key, k -> new ArrayList<>(1)).add(cell);
+            table2Attributes.computeIfAbsent(cell.attribute.table, t -> new TreeSet<>()).add(cell.attribute.attribute);
+        }
+        for (var tableEntry : table2Key2Cells.entrySet()) {
+            var table = tableEntry.getKey();
+            var keyCol = tableName2keyCol.get(table);
+            var attributes = new ArrayList<>(table2Attributes.get(table));
+            var columns = new ArrayList<String>(attributes.size() * 2 + 1);
+            columns.add("a." + keyCol);
+            for (var attr : attributes) {
+                columns.add("a." + attr);
+                columns.add("b." + attr);
+            }
+            var q = "SELECT " + String.join(", ", columns) + " FROM " + table + " a, " + table + IT_SUFFIX + " b WHERE " + storage.anyKey("a." + keyCol, keyType(table)) + " AND a." + keyCol + " = b.insertionKey";
+            var stmt = bulkCompleteStatements.get(q);
+            if (stmt == null) {
+                stmt = c.prepareStatement(q);
+                bulkCompleteStatements.put(q, stmt);
+            }
+            var key2Cells = tableEntry.getValue();
+            stmt.setArray(1, storage.keyArray(c, key2Cells.keySet()));
+            var seenKeys = new HashSet<String>(key2Cells.size());
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    var key = rs.getString(1);
+                    if (!seenKeys.add(key)) {
+                        throw new SQLException("Non-unique key!");
+                    }
+                    for (var cell : key2Cells.get(key)) {
+                        var columnIdx = 2 + 2 * attributes.indexOf(cell.attribute.attribute);
+                        cell.value = rs.getString(columnIdx);
+                        cell.insertionTime = rs.getLong(columnIdx + 1);
+                    }
+                }
+            }
+        }
+    }
+
     public long deleteCells(HashSet<Cell> toDelete) throws SQLException {
         var delStart = System.nanoTime();
+        if (graphCache != null) {
+            graphCache.invalidate(toDelete);
+        }
+        if (instantiationCache != null) {
+            instantiationCache.invalidate(toDelete);
+        }
+        // table -> row -> attributes to null, so that every row is updated once
+        var table2Key2Attributes = new HashMap<String, HashMap<String, TreeSet<String>>>();
         for (var cell : toDelete) {
-            setToNull(cell);
+            table2Key2Attributes.computeIfAbsent(cell.attribute.table, t -> new HashMap<>()).computeIfAbsent(cell.key, k -> new TreeSet<>()).add(cell.attribute.attribute);
+        }
+        for (var tableEntry : table2Key2Attributes.entrySet()) {
+            // rows with the same attributes to null share one statement
+            var attributes2Keys = new HashMap<TreeSet<String>, ArrayList<String>>();
+            for (var rowEntry : tableEntry.getValue().entrySet()) {
+                attributes2Keys.computeIfAbsent(rowEntry.getValue(), a -> new ArrayList<>()).add(rowEntry.getKey());
+            }
+            for (var groupEntry : attributes2Keys.entrySet()) {
+                setToNull(tableEntry.getKey(), groupEntry.getKey(), groupEntry.getValue());
+            }
         }
         c.commit();
         return System.nanoTime() - delStart;
     }
 
-    private void setToNull(Cell cell) throws SQLException {
-        var q = "UPDATE " + cell.attribute.table + " SET " + cell.attribute.attribute + " = NULL WHERE " + tableName2keyCol.get(cell.attribute.table) + " = '" + cell.key + "'";
-        var i = statement.executeUpdate(q);
+    private void setToNull(String table, TreeSet<String> attributes, ArrayList<String> keys) throws SQLException {
+        var assignments = new ArrayList<String>(attributes.size());
+        for (var attribute : attributes) {
+            assignments.add(attribute + " = NULL");
+        }
+        var q = "UPDATE " + table + " SET " + String.join(", ", assignments) + " WHERE " + storage.anyKey(tableName2keyCol.get(table), keyType(table));
+        var stmt = nullStatements.get(q);
+        if (stmt == null) {
+            stmt = c.prepareStatement(q);
+            nullStatements.put(q, stmt);
+        }
+        stmt.setArray(1, storage.keyArray(c, keys));
+        var i = stmt.executeUpdate();
 
-        if (i != 1) {
+        if (i != keys.size()) {
             throw new SQLException("More cells deleted than expected");
         }
     }
 
+    private PreparedStatement resetStatement(Attribute attribute) throws SQLException {
+        var stmt = resetStatements.get(attribute);
+        if (stmt == null) {
+            stmt = c.prepareStatement("UPDATE " + attribute.table + " SET " + attribute.attribute + " = ? WHERE " + tableName2keyCol.get(attribute.table) + " = ?");
+            resetStatements.put(attribute, stmt);
+        }
+        return stmt;
+    }
+
     public void resetValues(Collection<Cell> cells) throws SQLException {
+        if (graphCache != null) {
+            graphCache.invalidate(cells);
+        }
+        if (instantiationCache != null) {
+            instantiationCache.invalidate(cells);
+        }
         for (var cell : cells) {
-            var stmt = c.prepareStatement("UPDATE " + cell.attribute.table + " SET " + cell.attribute.attribute + " = ? WHERE " + tableName2keyCol.get(cell.attribute.table) + " = '" + cell.key + "'");
-            if (cell.attribute.attribute.equals("payload")) {
-                PGobject jsonObject = new PGobject();
-                jsonObject.setType("json");
-                jsonObject.setValue(cell.value);
-                stmt.setObject(1, jsonObject);
-            } else {
-                try {
-                    var val = Long.parseLong(cell.value);
-                    stmt.setLong(1, val);
-                } catch (Exception e) {
-                    try {
-                        var val = Float.parseFloat(cell.value);
-                        stmt.setFloat(1, val);
-                    } catch (Exception e2) {
-                        stmt.setString(1, cell.value);
-                    }
-                }
-
-            }
+            var stmt = resetStatement(cell.attribute);
+            stmt.clearParameters();
+            storage.bindValue(stmt, 1, cell);
+            stmt.setString(2, cell.key);
             var i = stmt.executeUpdate();
-            stmt.close();
             if (i != 1) {
                 throw new SQLException("More cells deleted than expected");
             }
@@ -204,7 +578,7 @@ public class Instatiator {
 
     public ArrayList<String> getKeysInTime(Attribute attr, long minTs, long maxTs) throws SQLException {
         ArrayList<String> keys = new ArrayList<>(ConfigParameter.numKeys);
-        var resultSet = statement.executeQuery("SELECT a." + tableName2keyCol.get(attr.table) + " FROM " + attr.table + " a, " + attr.table + IT_SUFFIX + " b WHERE insertionKey = a." + tableName2keyCol.get(attr.table) + " AND b." + attr.attribute + " BETWEEN " + minTs + " AND " + maxTs + "ORDER BY RANDOM() LIMIT " + ConfigParameter.numKeys);
+        var resultSet = statement.executeQuery("SELECT a." + tableName2keyCol.get(attr.table) + " FROM " + attr.table + " a, " + attr.table + IT_SUFFIX + " b WHERE insertionKey = a." + tableName2keyCol.get(attr.table) + " AND b." + attr.attribute + " BETWEEN " + minTs + " AND " + maxTs + " ORDER BY RANDOM() LIMIT " + ConfigParameter.numKeys);
         while (resultSet.next()) {
             keys.add(resultSet.getString(1));
         }
@@ -0,0 +1,202 @@
+package de.hpi.isg;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// deletion from the lp relaxation min SUM(x) s.t. SUM(x over edge) >= x of the cell owning the edge, x = 1 for the deleted cells
+// the relaxation is solved by lagrangian subgradient ascent, every multiplier vector gives a lower bound on the optimum
+final class LpRounding {
+    private static final long SEED = 42L;
+
+    private final CompactHypergraph graph;
+    private final int[] order;
+    private final int orderSize;
+    private final boolean[] isRoot;
+    final double[] fractional;
+    int[] deletion;
+    double lowerBound = 0;
+
+    private LpRounding(CompactHypergraph graph, int[] roots) {
+        this.graph = graph;
+        order = new int[graph.numCells()];
+        orderSize = graph.postOrder(roots, order);
+        isRoot = new boolean[graph.numCells()];
+        for (var root : roots) {
+            isRoot[root] = true;
+        }
+        fractional = new double[graph.numCells()];
+    }
+
+    static LpRounding solve(CompactHypergraph graph, int[] roots) {
+        var solver = new LpRounding(graph, roots);
+        solver.deletion = graph.treeDpSelection(solver.order, solver.orderSize, roots);
+        solver.relax(ConfigParameter.lpIterations);
+        solver.repair();
+        var random = new Random(SEED);
+        for (int round = 0; round < ConfigParameter.lpRoundings; round++) {
+            // a deletion of the size of the rounded up bound is optimal
+            if (solver.deletion.length <= Math.ceil(solver.lowerBound - 1e-9)) {
+                break;
+            }
+            var rounded = solver.round(random);
+            if (rounded.length < solver.deletion.length) {
+                solver.deletion = rounded;
+            }
+        }
+        return solver;
+    }
+
+    // subgradient ascent on the multipliers y of the edge constraints, the average of the minimizers approximates the lp solution
+    private void relax(int iterations) {
+        var multipliers = new double[graph.numEdges()];
+        var reducedCost = new double[graph.numCells()];
+        var x = new boolean[graph.numCells()];
+        var subgradient = new double[graph.numEdges()];
+        double upperBound = deletion.length;
+        double stepScale = 2;
+        int sinceImprovement = 0;
+        int averaged = 0;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < orderSize; i++) {
+                reducedCost[order[i]] = 1;
+            }
+            for (int i = 0; i < orderSize; i++) {
+                var cell = order[i];
+                for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                    reducedCost[cell] += multipliers[edge];
+                    for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                        reducedCost[graph.members[j]] -= multipliers[edge];
+                    }
+                }
+            }
+
+            double bound = 0;
+            for (int i = 0; i < orderSize; i++) {
+                var cell = order[i];
+                x[cell] = isRoot[cell] || reducedCost[cell] < 0;
+                if (x[cell]) {
+                    bound += reducedCost[cell];
+                }
+            }
+            if (bound > lowerBound + 1e-9) {
+                lowerBound = bound;
+                sinceImprovement = 0;
+            } else if (++sinceImprovement >= 20) {
+                stepScale /= 2;
+                sinceImprovement = 0;
+            }
+            for (int i = 0; i < orderSize; i++) {
+                if (x[order[i]]) {
+                    fractional[order[i]]++;
+                }
+            }
+            averaged++;
+
+            double norm = 0;
+            for (int i = 0; i < orderSize; i++) {
+                var cell = order[i];
+                for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                    double slack = x[cell] ? -1 : 0;
+                    for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                        if (x[graph.members[j]]) {
+                            slack++;
+                        }
+                    }
+                    // projected onto y >= 0
+                    subgradient[edge] = multipliers[edge] > 0 || slack < 0 ? -slack : 0;
+                    norm += subgradient[edge] * subgradient[edge];
+                }
+            }
+            // the minimizer satisfies every constraint with complementary slackness, so it is an optimal integral solution
+            if (norm == 0) {
+                var minimizer = new int[orderSize];
+                int minimizerSize = 0;
+                for (int i = 0; i < orderSize; i++) {
+                    if (x[order[i]]) {
+                        minimizer[minimizerSize++] = order[i];
+                    }
+                }
+                if (minimizerSize < deletion.length) {
+                    deletion = Arrays.copyOf(minimizer, minimizerSize);
+                }
+                break;
+            }
+            if (upperBound - lowerBound < 1 - 1e-9) {
+                break;
+            }
+            var step = stepScale * (upperBound - bound) / norm;
+            for (int i = 0; i < orderSize; i++) {
+                var cell = order[i];
+                for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                    multipliers[edge] = Math.max(0, multipliers[edge] + step * subgradient[edge]);
+                }
+            }
+        }
+        for (int i = 0; i < orderSize; i++) {
+            fractional[order[i]] /= averaged;
+        }
+    }
+
+    // raises members top down until the averaged solution is feasible for the relaxation
+    private void repair() {
+        for (int i = orderSize - 1; i >= 0; i--) {
+            var cell = order[i];
+            if (isRoot[cell]) {
+                fractional[cell] = 1;
+            }
+            for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                double sum = 0;
+                int maxMember = graph.members[graph.memberStart[edge]];
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    var member = graph.members[j];
+                    sum += fractional[member];
+                    if (fractional[member] > fractional[maxMember]) {
+                        maxMember = member;
+                    }
+                }
+                if (sum < fractional[cell]) {
+                    fractional[maxMember] = Math.min(1, fractional[maxMember] + fractional[cell] - sum);
+                }
+            }
+        }
+    }
+
+    // top down, every edge of a deleted cell that is not hit yet deletes a member drawn proportionally to its fractional value
+    // on trees a cell is deleted with a probability of at most its fractional value, so the expected size is at most the fractional objective
+    private int[] round(Random random) {
+        var selected = new boolean[graph.numCells()];
+        var selection = new int[graph.numCells()];
+        int selectionSize = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (isRoot[order[i]]) {
+                selected[order[i]] = true;
+                selection[selectionSize++] = order[i];
+            }
+        }
+        for (int idx = 0; idx < selectionSize; idx++) {
+            var cell = selection[idx];
+            for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                if (graph.isHit(edge, selected)) {
+                    continue;
+                }
+                double sum = 0;
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    sum += fractional[graph.members[j]];
+                }
+                int pick = graph.members[graph.memberStart[edge]];
+                double threshold = random.nextDouble() * sum;
+                for (int j = graph.memberStart[edge]; j < graph.memberStart[edge + 1]; j++) {
+                    threshold -= fractional[graph.members[j]];
+                    if (threshold < 0) {
+                        pick = graph.members[j];
+                        break;
+                    }
+                }
+                selected[pick] = true;
+                selection[selectionSize++] = pick;
+            }
+        }
+        return Arrays.copyOf(selection, selectionSize);
+    }
+}
@@ -3,7 +3,6 @@ package de.hpi.isg;
 import de.hpi.isg.RelationalDependencyRules.Rule;
 import de.hpi.isg.RelationalDependencyRules.Attribute;
 import de.hpi.isg.RelationalDependencyRules.Cell;
-import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
 import com.gurobi.gurobi.*;
 import org.apache.commons.csv.*;
 import org.json.JSONObject;
@@ -21,10 +20,11 @@ public class Main {
     final static HashMap<Attribute, ArrayList<Rule>> attributeInHead = new HashMap<>();
     final static HashMap<Attribute, ArrayList<Rule>> attributeInTail = new HashMap<>();
     final static HashMap<String, String> tableName2keyCol = new HashMap<>();
-    final static ArrayList<HyperEdge> EMPTY_LIST = new ArrayList<>(0);
     static GRBEnv env;
+    // shared by consecutive batches of compareBatch
+    private static IncrementalIlp incrementalIlp;
 
-    private static void parseConfigFile(String jsonString) throws Exception {
+    static void parseConfigFile(String jsonString) throws Exception {
         JSONObject root = new JSONObject(jsonString);
 
         if (root.has("dataset")) {
@@ -54,6 +54,9 @@ public class Main {
         if (root.has("averageDependence")) {
             ConfigParameter.averageDependence = root.getBoolean("averageDependence");
         }
+        if (root.has("maskRuleSubsets")) {
+            ConfigParameter.maskRuleSubsets = root.getBoolean("maskRuleSubsets");
+        }
         if (root.has("numKeys")) {
             ConfigParameter.numKeys = root.getInt("numKeys");
         }
@@ -88,41 +91,205 @@ public class Main {
         if (root.has("baseFrequency")) {
             ConfigParameter.baseFrequency = root.getLong("baseFrequency");
         }
+        if (root.has("instantiationBatchSize")) {
+            ConfigParameter.instantiationBatchSize = root.getInt("instantiationBatchSize");
+        }
+        if (root.has("instantiationThreads")) {
+            ConfigParameter.instantiationThreads = root.getInt("instantiationThreads");
+        }
+        if (root.has("graphCache")) {
+            ConfigParameter.graphCache = root.getBoolean("graphCache");
+        }
+        if (root.has("graphCacheSize")) {
+            ConfigParameter.graphCacheSize = root.getLong("graphCacheSize");
+        }
+        if (root.has("instantiationCacheSize")) {
+            ConfigParameter.instantiationCacheSize = root.getLong("instantiationCacheSize");
+        }
+        if (root.has("createIndexes")) {
+            ConfigParameter.createIndexes = root.getBoolean("createIndexes");
+        }
+        if (root.has("snapshot")) {
+            ConfigParameter.snapshot = root.getBoolean("snapshot");
+        }
+        if (root.has("ilp")) {
+            ConfigParameter.ilp = root.getBoolean("ilp");
+        }
+        if (root.has("branchAndBound")) {
+            ConfigParameter.branchAndBound = root.getBoolean("branchAndBound");
+        }
+        if (root.has("ilpTimeLimit")) {
+            ConfigParameter.ilpTimeLimit = root.getDouble("ilpTimeLimit");
+        }
+        if (root.has("ilpMipGap")) {
+            ConfigParameter.ilpMipGap = root.getDouble("ilpMipGap");
+        }
+        if (root.has("ilpThreads")) {
+            ConfigParameter.ilpThreads = root.getInt("ilpThreads");
+        }
+        if (root.has("incrementalIlp")) {
+            ConfigParameter.incrementalIlp = root.getBoolean("incrementalIlp");
+        }
+        if (root.has("incrementalIlpMaxCells")) {
+            ConfigParameter.incrementalIlpMaxCells = root.getInt("incrementalIlpMaxCells");
+        }
+        if (root.has("lpRounding")) {
+            ConfigParameter.lpRounding = root.getBoolean("lpRounding");
+        }
+        if (root.has("lpIterations")) {
+            ConfigParameter.lpIterations = root.getInt("lpIterations");
+        }
+        if (root.has("lpRoundings")) {
+            ConfigParameter.lpRoundings = root.getInt("lpRoundings");
+        }
+        if (root.has("generatorScaleFactor")) {
+            ConfigParameter.generatorScaleFactor = root.getDouble("generatorScaleFactor");
+        }
+        if (root.has("generatorFanOut")) {
+            ConfigParameter.generatorFanOut = root.getDouble("generatorFanOut");
+        }
+        if (root.has("generatorSkew")) {
+            ConfigParameter.generatorSkew = root.getDouble("generatorSkew");
+        }
+        if (root.has("generatorSeed")) {
+            ConfigParameter.generatorSeed = root.getLong("generatorSeed");
+        }
+        if (root.has("generatorOutput")) {
+            ConfigParameter.generatorOutput = root.getString("generatorOutput");
+        }
+        if (root.has("servicePort")) {
+            ConfigParameter.servicePort = root.getInt("servicePort");
+        }
+        if (root.has("serviceBatchSize")) {
+            ConfigParameter.serviceBatchSize = root.getInt("serviceBatchSize");
+        }
+        if (root.has("serviceBatchDelay")) {
+            ConfigParameter.serviceBatchDelay = root.getLong("serviceBatchDelay");
+        }
+        if (root.has("serviceQueueSize")) {
+            ConfigParameter.serviceQueueSize = root.getInt("serviceQueueSize");
+        }
+        if (root.has("serviceDeletionMethod")) {
+            ConfigParameter.serviceDeletionMethod = root.getInt("serviceDeletionMethod");
+        }
+        if (root.has("decomposeComponents")) {
+            ConfigParameter.decomposeComponents = root.getBoolean("decomposeComponents");
+        }
+        if (root.has("componentThreads")) {
+            ConfigParameter.componentThreads = root.getInt("componentThreads");
+        }
+        if (root.has("retentionPeriod")) {
+            ConfigParameter.retentionPeriod = root.getLong("retentionPeriod");
+        }
+        if (root.has("retentionGracePeriod")) {
+            ConfigParameter.retentionGracePeriod = root.getLong("retentionGracePeriod");
+        }
+        if (root.has("retentionTick")) {
+            ConfigParameter.retentionTick = root.getLong("retentionTick");
+        }
+        if (root.has("retentionMargin")) {
+            ConfigParameter.retentionMargin = root.getLong("retentionMargin");
+        }
+        if (root.has("retentionMaxRetries")) {
+            ConfigParameter.retentionMaxRetries = root.getInt("retentionMaxRetries");
+        }
+        if (root.has("retentionLog")) {
+            ConfigParameter.retentionLog = root.getString("retentionLog");
+        }
+        if (root.has("retentionPort")) {
+            ConfigParameter.retentionPort = root.getInt("retentionPort");
+        }
     }
 
     public static void main(String[] args) throws Exception {
-        String configFilePath = args.length > 0 ? args[0] : "config.json";
+        initialize(args.length > 0 ? args[0] : "config.json");
+
+        var baseAttributes = new HashSet<Attribute>();
+        baseAttributes.addAll(attributeInTail.keySet());
+        baseAttributes.addAll(attributeInHead.keySet());
+        baseAttributes.removeAll(derivedAttributes);
+
+        checkNonCyclicRules(baseAttributes);
+
+        var instatiator = createInstatiator();
+
+        try {
+            // switch between experiments
+            if (ConfigParameter.averageDependence) {
+                AverageDependence.averageDependence(baseAttributes, rules, attributeInHead, attributeInTail, tableName2keyCol);
+            } else if (ConfigParameter.batching && ConfigParameter.scheduling) {
+                Scheduling.mixScheduleDemandExperiment(instatiator);
+            } else if (ConfigParameter.batching) {
+                compareBatch(instatiator, baseAttributes);
+            } else if (ConfigParameter.scheduling) {
+                Scheduling.scheduleExperiment(instatiator);
+            } else {
+                iterateAttributes(instatiator, baseAttributes);
+            }
+            // stdout holds the csv results
+            if (instatiator.graphCache != null) {
+                System.err.println(instatiator.graphCache);
+            }
+            if (instatiator.instantiationCache != null) {
+                System.err.println(instatiator.instantiationCache);
+            }
+        } finally {
+            instatiator.close();
+        }
+    }
+
+    // configuration, licence and rules, shared by the experiments and the erasure service
+    static void initialize(String configFilePath) throws Exception {
         parseConfigFile(Files.readString(Paths.get(configFilePath)));
 
-        env = new GRBEnv();
-        env.set(GRB.IntParam.OutputFlag, 0);
-        env.set(GRB.IntParam.LogToConsole, 0);
+        // the branch and bound solver runs without a licence
+        if (ConfigParameter.ilp) {
+            env = createEnv();
+        }
 
         parseRules();
         parseSchema();
         parseDerivedData();
+    }
 
-        var baseAttributes = new HashSet<Attribute>();
-        baseAttributes.addAll(attributeInTail.keySet());
-        baseAttributes.addAll(attributeInHead.keySet());
-        baseAttributes.removeAll(derivedAttributes);
+    static GRBEnv createEnv() throws GRBException {
+        var env = new GRBEnv();
+        env.set(GRB.IntParam.OutputFlag, 0);
+        env.set(GRB.IntParam.LogToConsole, 0);
+        return env;
+    }
 
-        checkNonCyclicRules(baseAttributes);
+    // the environment of the experiments, created on first use if the ilp experiments are off, e.g. for the incremental ilp
+    static synchronized GRBEnv env() throws GRBException {
+        if (env == null) {
+            env = createEnv();
+        }
+        return env;
+    }
+
+    // the workers that solve the components of a batch have an environment each
+    private static GRBEnv ilpEnv() throws GRBException {
+        var thread = Thread.currentThread();
+        return thread instanceof ComponentSolver.Worker ? ((ComponentSolver.Worker) thread).env() : env();
+    }
 
-        var instatiator = new Instatiator(attributeInHead, attributeInTail, tableName2keyCol);
-
-        // switch between experiments
-        if (ConfigParameter.averageDependence) {
-            AverageDependence.averageDependence(baseAttributes, rules, attributeInHead, attributeInTail, tableName2keyCol);
-        } else if (ConfigParameter.batching && ConfigParameter.scheduling) {
-            Scheduling.mixScheduleDemandExperiment(instatiator);
-        } else if (ConfigParameter.batching) {
-            compareBatch(instatiator, baseAttributes);
-        } else if (ConfigParameter.scheduling) {
-            Scheduling.scheduleExperiment(instatiator);
+    static Instatiator createInstatiator() throws SQLException {
+        Instatiator instatiator;
+        if (ConfigParameter.snapshot) {
+            // the snapshot answers in process, so there are no round trips to spread over threads
+            instatiator = new SnapshotInstatiator(attributeInHead, attributeInTail, tableName2keyCol);
+        } else if (ConfigParameter.instantiationThreads > 1) {
+            instatiator = new ParallelInstatiator(attributeInHead, attributeInTail, tableName2keyCol, ConfigParameter.instantiationThreads);
         } else {
-            iterateAttributes(instatiator, baseAttributes);
+            instatiator = new Instatiator(attributeInHead, attributeInTail, tableName2keyCol);
+        }
+        if (ConfigParameter.graphCache) {
+            instatiator.useGraphCache(new DependencyGraphCache(rules, ConfigParameter.graphCacheSize > 0 ? ConfigParameter.graphCacheSize : Long.MAX_VALUE));
         }
+        if (ConfigParameter.instantiationCacheSize > 0) {
+            instatiator.useInstantiationCache(new InstantiationCache(rules, ConfigParameter.instantiationCacheSize));
+        }
+        return instatiator;
     }
 
     private static void checkNonCyclicRules(HashSet<Attribute> allAttributes) {
@@ -176,6 +343,12 @@ public class Main {
             case 2:
                 result = ilpApproach(instantiatedModel, deleted);
                 break;
+            case 3:
+                result = branchAndBoundDelete(instantiatedModel, deleted);
+                break;
+            case 4:
+                result = lpRoundingDelete(instantiatedModel, deleted);
+                break;
         }
         countsArray[0] += result.size() - 1;
         if (result.size() == 1) {
@@ -186,39 +359,69 @@ public class Main {
 
     private static void iterateAttributes(Instatiator instatiator, Set<Attribute> attributes) throws Exception {
         writeHeader();
-        HashSet<Cell>[] deletionSets = new HashSet[3];
+        HashSet<Cell>[] deletionSets = new HashSet[5];
 
         for (var attr : attributes) {
             if (derivedAttributes.contains(attr)) continue;
             System.out.print(attr.toString() + ",");
             var keys = instatiator.getKeys(attr);
+            var deletionCells = new ArrayList<Cell>(keys.size());
             for (var key : keys) {
-                var deletionCell = new Cell(attr, key);
-                instatiator.completeCell(deletionCell);
+                deletionCells.add(new Cell(attr, key));
+            }
+            instatiator.completeCells(deletionCells);
+            for (var deletionCell : deletionCells) {
                 var instantiatedModel = new InstantiatedModel(deletionCell, instatiator);
                 deletionSets[0] = runDeletionMethod(deletionCell, instantiatedModel, 0, Utils.optimalCounts);
                 deletionSets[1] = runDeletionMethod(deletionCell, instantiatedModel, 1, Utils.approximateCounts);
-                deletionSets[2] = runDeletionMethod(deletionCell, instantiatedModel, 2, Utils.ilpCounts);
+                if (ConfigParameter.ilp) {
+                    deletionSets[2] = runDeletionMethod(deletionCell, instantiatedModel, 2, Utils.ilpCounts);
+                }
+                if (ConfigParameter.branchAndBound) {
+                    deletionSets[3] = runDeletionMethod(deletionCell, instantiatedModel, 3, Utils.branchAndBoundCounts);
+                }
+                if (ConfigParameter.lpRounding) {
+                    deletionSets[4] = runDeletionMethod(deletionCell, instantiatedModel, 4, Utils.lpCounts);
+                }
 
                 // speed up experiments by only applying deletes once for optimal/ilp
-                assert deletionSets[0].size() == deletionSets[2].size();
-                var deletionTime = instatiator.deleteCells(deletionSets[2]);
-                instatiator.resetValues(deletionSets[2]);
+                var sharedSet = ConfigParameter.ilp ? deletionSets[2] : deletionSets[0];
+                assert deletionSets[0].size() == sharedSet.size();
+                var deletionTime = instatiator.deleteCells(sharedSet);
+                instatiator.resetValues(sharedSet);
                 Utils.optimalTimes[4] += deletionTime;
-                Utils.ilpTimes[4] += deletionTime;
+                if (ConfigParameter.ilp) {
+                    Utils.ilpTimes[4] += deletionTime;
+                }
                 if (deletionSets[0].size() == deletionSets[1].size()) {
                     Utils.approximateTimes[4] += deletionTime;
                 } else {
                     Utils.approximateTimes[4] += instatiator.deleteCells(deletionSets[1]);
                     instatiator.resetValues(deletionSets[1]);
                 }
+                if (ConfigParameter.branchAndBound) {
+                    if (sharedSet.size() == deletionSets[3].size()) {
+                        Utils.branchAndBoundTimes[4] += deletionTime;
+                    } else {
+                        Utils.branchAndBoundTimes[4] += instatiator.deleteCells(deletionSets[3]);
+                        instatiator.resetValues(deletionSets[3]);
+                    }
+                }
+                if (ConfigParameter.lpRounding) {
+                    if (sharedSet.size() == deletionSets[4].size()) {
+                        Utils.lpTimes[4] += deletionTime;
+                    } else {
+                        Utils.lpTimes[4] += instatiator.deleteCells(deletionSets[4]);
+                        instatiator.resetValues(deletionSets[4]);
+                    }
+                }
             }
             writeOutput();
         }
     }
 
     private static void compareBatch(Instatiator instatiator, Set<Attribute> attributes) throws Exception {
-        HashSet<Cell>[] deletionSets = new HashSet[3];
+        HashSet<Cell>[] deletionSets = new HashSet[5];
         var totalBatchSize = (ConfigParameter.numKeys * attributes.size()) - (ConfigParameter.numKeys * attributes.size()) % ConfigParameter.batchSizes[ConfigParameter.batchSizes.length - 1];
         var batch = new ArrayList<Cell>(ConfigParameter.numKeys * attributes.size());
 
@@ -226,12 +429,11 @@ public class Main {
             for (var attr : attributes) {
                 var keys = instatiator.getKeysInTime(attr, ConfigParameter.startSchedule, ConfigParameter.endSchedule);
                 for (var key : keys) {
-                    var deletionCell = new Cell(attr, key);
-                    instatiator.completeCell(deletionCell);
-                    batch.add(deletionCell);
+                    batch.add(new Cell(attr, key));
                 }
             }
 
+            instatiator.completeCells(batch);
             Collections.sort(batch);
 
             for (int i = 1; i < ConfigParameter.batchSizes.length; i++) {
@@ -259,12 +461,11 @@ public class Main {
                     if (batch.size() == totalBatchSize) {
                         break;
                     }
-                    var deletionCell = new Cell(attr, key);
-                    instatiator.completeCell(deletionCell);
-                    batch.add(deletionCell);
+                    batch.add(new Cell(attr, key));
                 }
             }
 
+            instatiator.completeCells(batch);
             Collections.sort(batch);
 
             for (var batchSize : ConfigParameter.batchSizes) {
@@ -288,11 +489,34 @@ public class Main {
         Utils.optimalCounts[0] += deletionSets[0].size() - subBatch.size();
         deletionSets[1] = batchedApproximateDelete(model, subBatch);
         Utils.approximateCounts[0] += deletionSets[1].size() - subBatch.size();
-        deletionSets[2] = batchedIlpApproach(model, subBatch);
-        Utils.ilpCounts[0] += deletionSets[2].size() - subBatch.size();
+        deletionSets[2] = null;
+        if (ConfigParameter.ilp) {
+            if (ConfigParameter.incrementalIlp) {
+                if (incrementalIlp == null) {
+                    incrementalIlp = new IncrementalIlp();
+                }
+                deletionSets[2] = incrementalIlp.solve(model, subBatch);
+            } else {
+                deletionSets[2] = batchedIlpApproach(model, subBatch);
+            }
+            Utils.ilpCounts[0] += deletionSets[2].size() - subBatch.size();
+        }
+        deletionSets[3] = null;
+        if (ConfigParameter.branchAndBound) {
+            deletionSets[3] = batchedBranchAndBoundDelete(model, subBatch);
+            Utils.branchAndBoundCounts[0] += deletionSets[3].size() - subBatch.size();
+        }
+        deletionSets[4] = null;
+        if (ConfigParameter.lpRounding) {
+            deletionSets[4] = batchedLpRoundingDelete(model, subBatch);
+            Utils.lpCounts[0] += deletionSets[4].size() - subBatch.size();
+        }
 
-        HashMap<Integer, Long> deletionCount = new HashMap<>(3, 1.0f);
-        for (int i = 0; i < 3; i++) {
+        HashMap<Integer, Long> deletionCount = new HashMap<>(5, 1.0f);
+        for (int i = 0; i < 5; i++) {
+            if (deletionSets[i] == null) {
+                continue;
+            }
             var delTime = deletionCount.get(deletionSets[i].size());
             if (delTime == null) {
                 delTime = instatiator.deleteCells(deletionSets[i]);
@@ -309,13 +533,21 @@ public class Main {
                 case 2:
                     Utils.ilpTimes[4] += delTime;
                     break;
+                case 3:
+                    Utils.branchAndBoundTimes[4] += delTime;
+                    break;
+                case 4:
+                    Utils.lpTimes[4] += delTime;
+                    break;
             }
         }
         subBatch.clear();
     }
 
     private static void writeHeader() {
-        System.out.println("Attribute,optimalTime,optimalInstantiationTime,optimalModelTime,optimalOptimizationTime,optimalDeletionTime,approximateTime,approximateInstantiationTime,approximateModelTime,approximateOptimizationTime,approximateDeletionTime,ilpTime,ilpInstantiationTime,ilpModelTime,ilpOptimizationTime,ilpDeletionTime,optimalDeletes,optimalInstantiations,optimalHeight,optimalMemory,approximateDeletes,approximateInstantiations,approximateHeight,approximateMemory,ilpDeletes,ilpInstantiations,ilpHeight,ilpMemory");
+        System.out.println("Attribute,optimalTime,optimalInstantiationTime,optimalModelTime,optimalOptimizationTime,optimalDeletionTime,approximateTime,approximateInstantiationTime,approximateModelTime,approximateOptimizationTime,approximateDeletionTime,ilpTime,ilpInstantiationTime,ilpModelTime,ilpOptimizationTime,ilpDeletionTime,ilpGap,optimalDeletes,optimalInstantiations,optimalHeight,optimalMemory,approximateDeletes,approximateInstantiations,approximateHeight,approximateMemory,ilpDeletes,ilpInstantiations,ilpHeight,ilpMemory"
+                + (ConfigParameter.branchAndBound ? ",branchAndBoundTime,branchAndBoundInstantiationTime,branchAndBoundModelTime,branchAndBoundOptimizationTime,branchAndBoundDeletionTime,branchAndBoundDeletes,branchAndBoundInstantiations,branchAndBoundHeight,branchAndBoundMemory" : "")
+                + (ConfigParameter.lpRounding ? ",lpTime,lpInstantiationTime,lpModelTime,lpOptimizationTime,lpDeletionTime,lpLowerBound,lpGap,lpDeletes,lpInstantiations,lpHeight,lpMemory" : ""));
     }
 
     private static String getTimeString(long time) {
@@ -328,6 +560,8 @@ public class Main {
         Utils.optimalTimes[2] -= Utils.optimalTimes[1];
         // no model construction for approximate version
         Utils.ilpTimes[2] -= Utils.ilpTimes[1];
+        Utils.branchAndBoundTimes[2] -= Utils.branchAndBoundTimes[1];
+        Utils.lpTimes[2] -= Utils.lpTimes[1];
         for (var time : Utils.optimalTimes) {
             output.add(getTimeString(time));
         }
@@ -337,6 +571,7 @@ public class Main {
         for (var time : Utils.ilpTimes) {
             output.add(getTimeString(time));
         }
+        output.add(String.valueOf(Utils.ilpGap));
         for (var count : Utils.optimalCounts) {
             output.add(String.valueOf(count));
         }
@@ -346,63 +581,80 @@ public class Main {
         for (var count : Utils.ilpCounts) {
             output.add(String.valueOf(count));
         }
+        if (ConfigParameter.branchAndBound) {
+            for (var time : Utils.branchAndBoundTimes) {
+                output.add(getTimeString(time));
+            }
+            for (var count : Utils.branchAndBoundCounts) {
+                output.add(String.valueOf(count));
+            }
+        }
+        if (ConfigParameter.lpRounding) {
+            for (var time : Utils.lpTimes) {
+                output.add(getTimeString(time));
+            }
+            output.add(String.valueOf(Utils.lpLowerBound));
+            output.add(String.valueOf(Utils.lpGap));
+            for (var count : Utils.lpCounts) {
+                output.add(String.valueOf(count));
+            }
+        }
         System.out.println(String.join(",", output));
         Arrays.fill(Utils.optimalTimes, 0L);
         Arrays.fill(Utils.approximateTimes, 0L);
         Arrays.fill(Utils.ilpTimes, 0L);
+        Utils.ilpGap = 0;
         Arrays.fill(Utils.optimalCounts, 0L);
         Arrays.fill(Utils.approximateCounts, 0L);
         Arrays.fill(Utils.ilpCounts, 0L);
+        Arrays.fill(Utils.branchAndBoundTimes, 0L);
+        Arrays.fill(Utils.branchAndBoundCounts, 0L);
+        Arrays.fill(Utils.lpTimes, 0L);
+        Arrays.fill(Utils.lpCounts, 0L);
+        Utils.lpLowerBound = 0;
+        Utils.lpGap = 0;
     }
 
     public static HashSet<Cell> optimalDelete(InstantiatedModel model, Cell deleted) {
-        Utils.optimalCounts[1] += model.instantiationTime.size() - 1;
+        Utils.add(Utils.optimalCounts, 1, model.instantiationTime.size() - 1);
 //        Utils.optimalCounts[2] += model.treeLevels.size();
-        Utils.optimalTimes[2] += model.modelConstructionTime;
+        Utils.add(Utils.optimalTimes, 2, model.modelConstructionTime);
 
         var start = System.nanoTime();
-        for (var currLevels : model.treeLevels) {
-            for (var currCell : currLevels) {
-                Utils.optimalTimes[1] += model.instantiationTime.getOrDefault(currCell, 0L);
-                var childrenEdges = model.cell2Edge.get(currCell);
-                currCell.cost = 1;
-                if (childrenEdges != null) {
-                    for (var edge : childrenEdges) {
-                        long minCost = Integer.MAX_VALUE;
-                        Cell minCell = null;
-
-                        for (var cell : edge) {
-                            if (minCell == null || cell.cost < minCost) {
-                                minCell = cell;
-                                minCost = cell.cost;
-                            }
-                        }
-                        edge.minCell = minCell;
-                        currCell.cost += minCost;
-                    }
-                }
+        long instantiationTime = 0;
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var cost = workspace.cost;
+        var edgeMin = workspace.edgeMin;
+        for (int level = 0; level < graph.numLevels(); level++) {
+            for (int currCell = graph.levelStart[level]; currCell < graph.levelStart[level + 1]; currCell++) {
+                instantiationTime += graph.instantiationTime[currCell];
+                cost[currCell] = 1;
+                cost[currCell] += graph.chooseCheapest(currCell, cost, edgeMin);
             }
         }
 
-        Queue<Cell> cellsToVisit = new LinkedList<>();
-        cellsToVisit.add(deleted);
+        var cellsToVisit = workspace.queue;
+        var visited = workspace.visited;
+        var root = graph.id(deleted);
+        cellsToVisit.addLast(root);
+        visited.mark(root);
         HashSet<Cell> toDelete = new HashSet<>();
         toDelete.add(deleted);
 
         while (!cellsToVisit.isEmpty()) {
             var currCell = cellsToVisit.poll();
-            var edges = model.cell2Edge.get(currCell);
-            if (edges != null) {
-                for (var edge : model.cell2Edge.get(currCell)) {
-                    if (toDelete.add(edge.minCell)) {
-                        cellsToVisit.add(edge.minCell);
-                    }
+            for (int edge = graph.edgeStart[currCell]; edge < graph.edgeStart[currCell + 1]; edge++) {
+                if (visited.mark(edgeMin[edge])) {
+                    toDelete.add(graph.cells[edgeMin[edge]]);
+                    cellsToVisit.addLast(edgeMin[edge]);
                 }
             }
         }
-        Utils.optimalTimes[3] += System.nanoTime() - start;
+        Utils.add(Utils.optimalTimes, 1, instantiationTime);
+        Utils.add(Utils.optimalTimes, 3, System.nanoTime() - start);
         if (ConfigParameter.measureMemory) {
-            Utils.optimalCounts[3] += measureOptimalMemory(model, deleted);
+            Utils.add(Utils.optimalCounts, 3, measureOptimalMemory(model, deleted));
         }
 
         return toDelete;
@@ -410,22 +662,21 @@ public class Main {
 
     private static long measureOptimalMemory(InstantiatedModel model, Cell deleted) {
         long size = 0;
-        LinkedList<Cell> cellsToVisit = new LinkedList<>();
-        HashSet<Cell> instantiatedCells = new HashSet<>();
-        cellsToVisit.add(deleted);
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var cellsToVisit = workspace.queue;
+        var instantiatedCells = workspace.visited;
+        cellsToVisit.addLast(graph.id(deleted));
         while (!cellsToVisit.isEmpty()) {
             var curr = cellsToVisit.poll();
             // per cell: 4 bytes for the table index, 4 bytes for the row index, 4 bytes insertionTime, 1 byte state (deleted) and 4 bytes cost
             size += 4 + 4 + 4 + 1 + 4;
-            var edges = model.cell2Edge.get(curr);
-            if (edges != null) {
-                for (var edge : edges) {
-                    // 8 bytes per element in hyperedge + 8 bytes for pointer from head to edge + 4 bytes for the cheapest node
-                    size += edge.size() * 8L + 8L + 4L;
-                    for (var cell : edge) {
-                        if (instantiatedCells.add(cell)) {
-                            cellsToVisit.add(cell);
-                        }
+            for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                // 8 bytes per element in hyperedge + 8 bytes for pointer from head to edge + 4 bytes for the cheapest node
+                size += (graph.memberStart[edge + 1] - graph.memberStart[edge]) * 8L + 8L + 4L;
+                for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+                    if (instantiatedCells.mark(graph.members[i])) {
+                        cellsToVisit.addLast(graph.members[i]);
                     }
                 }
             }
@@ -433,203 +684,256 @@ public class Main {
         return size;
     }
 
-    private static boolean areAllChildrenInitialized(ArrayList<HyperEdge> edges) {
-        for (var edge : edges) {
-            for (var cell : edge) {
-                if (cell.cost == Integer.MAX_VALUE) return false;
-            }
+    private static boolean areAllChildrenInitialized(CompactHypergraph graph, int cell, long[] cost) {
+        for (int i = graph.memberStart[graph.edgeStart[cell]]; i < graph.memberStart[graph.edgeStart[cell + 1]]; i++) {
+            if (cost[graph.members[i]] == Integer.MAX_VALUE) return false;
         }
         return true;
     }
 
-    static HashSet<Cell> batchedOptimalDelete(InstantiatedModel model, ArrayList<Cell> deletedCells) {
-        Utils.optimalCounts[1] += model.instantiationTime.size() - deletedCells.size();
-        Utils.optimalTimes[2] += model.modelConstructionTime;
-
-        var start = System.nanoTime();
-        LinkedList<Cell> cellsToVisit = new LinkedList<>();
-        HashSet<Cell> instantiatedCells = new HashSet<>();
-
+    // marks the deleted cells as the cheapest member of every edge of their parents
+    private static void preferDeletedCells(CompactHypergraph graph, List<Cell> deletedCells, int[] edgeMin) {
         for (var deleted : deletedCells) {
-            if (instantiatedCells.add(deleted)) {
-                cellsToVisit.add(deleted);
-                while (!cellsToVisit.isEmpty()) {
-                    var curr = cellsToVisit.poll();
-                    var edges = model.cell2Edge.get(curr);
-                    if (edges == null) {
-                        // leaf node
-                        Utils.optimalTimes[1] += model.instantiationTime.getOrDefault(curr, 0L);
-                        curr.cost = 1;
-                    } else {
-                        // inner node
-                        if (areAllChildrenInitialized(edges)) {
-                            Utils.optimalTimes[1] += model.instantiationTime.getOrDefault(curr, 0L);
-                            curr.cost = 1;
-                            for (var edge : edges) {
-                                long minCost = Integer.MAX_VALUE;
-                                Cell minCell = null;
-
-                                for (var cell : edge) {
-                                    if (minCell == null || cell.cost < minCost) {
-                                        minCell = cell;
-                                        minCost = cell.cost;
-                                    }
-                                }
-                                edge.minCell = minCell;
-                                curr.cost += minCost;
-                            }
-                        } else {
-                            for (var edge : edges) {
-                                for (var cell : edge) {
-                                    if (instantiatedCells.add(cell)) {
-                                        cellsToVisit.addFirst(cell);
-                                    }
-                                }
-                            }
-                            cellsToVisit.addLast(curr);
-                        }
+            var deletedId = graph.id(deleted);
+            for (int i = graph.parentStart[deletedId]; i < graph.parentStart[deletedId + 1]; i++) {
+                var parent = graph.parents[i];
+                for (int edge = graph.edgeStart[parent]; edge < graph.edgeStart[parent + 1]; edge++) {
+                    if (graph.edgeContains(edge, deletedId)) {
+                        edgeMin[edge] = deletedId;
                     }
                 }
             }
         }
+    }
 
+    // collects the deleted cells and everything reachable from them over the cheapest members
+    private static HashSet<Cell> collectDeletion(CompactHypergraph graph, List<Cell> deletedCells, CompactHypergraph.Workspace workspace) {
+        var cellsToVisit = workspace.queue;
+        var visited = workspace.tertiary;
+        HashSet<Cell> toDelete = new HashSet<>();
         for (var deleted : deletedCells) {
-            var parents = model.cell2Parents.get(deleted);
-            for (var parent : parents) {
-                for (var edge : model.cell2Edge.get(parent)) {
-                    if (edge.contains(deleted)) {
-                        edge.minCell = deleted;
+            var deletedId = graph.id(deleted);
+            if (visited.mark(deletedId)) {
+                toDelete.add(graph.cells[deletedId]);
+                cellsToVisit.addLast(deletedId);
+            }
+
+            while (!cellsToVisit.isEmpty()) {
+                var currCell = cellsToVisit.poll();
+                for (int edge = graph.edgeStart[currCell]; edge < graph.edgeStart[currCell + 1]; edge++) {
+                    var minCell = workspace.edgeMin[edge];
+                    if (visited.mark(minCell)) {
+                        toDelete.add(graph.cells[minCell]);
+                        cellsToVisit.addLast(minCell);
                     }
                 }
             }
         }
+        return toDelete;
+    }
 
-        HashSet<Cell> toDelete = new HashSet<>();
-        for (var deleted : deletedCells) {
-            cellsToVisit.add(deleted);
+    static HashSet<Cell> batchedOptimalDelete(InstantiatedModel model, ArrayList<Cell> deletedCells) {
+        return ComponentSolver.solve(model, deletedCells, Main::solveOptimal);
+    }
 
-            while (!cellsToVisit.isEmpty()) {
-                var currCell = cellsToVisit.poll();
+    private static HashSet<Cell> solveOptimal(InstantiatedModel model, List<Cell> deletedCells) {
+        Utils.add(Utils.optimalCounts, 1, model.instantiationTime.size() - deletedCells.size());
+        Utils.add(Utils.optimalTimes, 2, model.modelConstructionTime);
+
+        var start = System.nanoTime();
+        long instantiationTime = 0;
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var cost = workspace.cost;
+        var cellsToVisit = workspace.queue;
+        var instantiatedCells = workspace.visited;
 
-                if (toDelete.add(currCell)) {
-                    var edges = model.cell2Edge.get(currCell);
-                    if (edges != null) {
-                        for (var edge : edges) {
-                            cellsToVisit.add(edge.minCell);
+        for (var deleted : deletedCells) {
+            var deletedId = graph.id(deleted);
+            if (instantiatedCells.mark(deletedId)) {
+                cellsToVisit.addLast(deletedId);
+                while (!cellsToVisit.isEmpty()) {
+                    var curr = cellsToVisit.poll();
+                    if (graph.degree(curr) == 0) {
+                        // leaf node
+                        instantiationTime += graph.instantiationTime[curr];
+                        cost[curr] = 1;
+                    } else if (areAllChildrenInitialized(graph, curr, cost)) {
+                        // inner node
+                        instantiationTime += graph.instantiationTime[curr];
+                        cost[curr] = 1;
+                        cost[curr] += graph.chooseCheapest(curr, cost, workspace.edgeMin);
+                    } else {
+                        for (int i = graph.memberStart[graph.edgeStart[curr]]; i < graph.memberStart[graph.edgeStart[curr + 1]]; i++) {
+                            if (instantiatedCells.mark(graph.members[i])) {
+                                cellsToVisit.addFirst(graph.members[i]);
+                            }
                         }
+                        cellsToVisit.addLast(curr);
                     }
                 }
             }
         }
-        Utils.optimalTimes[3] += System.nanoTime() - start;
+
+        preferDeletedCells(graph, deletedCells, workspace.edgeMin);
+        var toDelete = collectDeletion(graph, deletedCells, workspace);
+        Utils.add(Utils.optimalTimes, 3, System.nanoTime() - start);
+        Utils.add(Utils.optimalTimes, 1, instantiationTime);
 
         return toDelete;
     }
 
-    private static HashSet<Cell> ilpApproach(InstantiatedModel model, Cell deleted) throws GRBException {
-        Utils.ilpTimes[2] += model.modelConstructionTime;
-        var start = System.nanoTime();
-        int maxId = 0;
-        int edgeCounter = -1;
-        HashMap<Cell, Integer> cell2Id = new HashMap<>();
-        HashMap<Cell, GRBVar> cell2Var = new HashMap<>();
-        HashSet<Cell> instantiatedCells = new HashSet<>();
-        HashSet<Cell> toDelete = new HashSet<>();
-        Queue<Cell> cellsToVisit = new LinkedList<>();
-        GRBModel grbModel = new GRBModel(env);
-        GRBLinExpr obj = new GRBLinExpr();
-        cell2Var.put(deleted, grbModel.addVar(1, 1, 0, GRB.BINARY, "a0"));
-        cell2Id.put(deleted, maxId++);
-        cellsToVisit.add(deleted);
-        instantiatedCells.add(deleted);
+    static HashSet<Cell> ilpApproach(InstantiatedModel model, Cell deleted) throws GRBException {
+        var toDelete = solveIlp(model, List.of(deleted));
+        if (ConfigParameter.measureMemory) {
+            Utils.ilpCounts[3] += measureILPMemory(model, deleted);
+        }
+        return toDelete;
+    }
 
-        while (!cellsToVisit.isEmpty()) {
-            var curr = cellsToVisit.poll();
-            var currId = cell2Id.get(curr);
-            var aj = cell2Var.get(curr);
-            obj.addTerm(1, aj);
-            Utils.ilpTimes[1] += model.instantiationTime.getOrDefault(curr, 0L);
-
-            var edges = model.cell2Edge.get(curr);
-            if (edges != null) {
-                for (var edge : edges) {
-                    var bi = grbModel.addVar(0, 1, 0, GRB.BINARY, "b" + ++edgeCounter);
-                    var hij = grbModel.addVar(0, 1, 0, GRB.BINARY, "h" + edgeCounter + currId);
-                    grbModel.addConstr(aj, GRB.EQUAL, hij, "");
-                    grbModel.addConstr(bi, GRB.EQUAL, hij, "");
-                    var tjiVars = new ArrayList<GRBVar>(edge.size());
-                    for (var cell : edge) {
-                        int tId;
-                        GRBVar aCell;
-                        if (cell2Id.get(cell) == null) {
-                            tId = maxId;
-                            cell2Id.put(cell, maxId++);
-                            aCell = grbModel.addVar(0, 1, 0, GRB.BINARY, "a" + tId);
-                            cell2Var.put(cell, aCell);
-                        } else {
-                            tId = cell2Id.get(cell);
-                            aCell = cell2Var.get(cell); // grbModel.getVarByName("a" + tId);
-                        }
+    // one binary variable aj per reached cell and one constraint SUM(ai over edge) >= aj per edge of the cell
+    private static HashSet<Cell> solveIlp(InstantiatedModel model, List<Cell> deletedCells) throws GRBException {
+        Utils.add(Utils.ilpTimes, 2, model.modelConstructionTime);
+        var start = System.nanoTime();
+        long instantiationTime = 0;
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var instantiatedCells = workspace.visited;
+        var cellsToVisit = workspace.queue;
+        // reached cells in the order of their variables
+        var reached = new int[graph.numCells()];
+        var cell2Var = new int[graph.numCells()];
+        int numVars = 0;
+        int numConstrs = 0;
 
-                        var tji = grbModel.addVar(0, 1, 0, GRB.BINARY, "t" + edgeCounter + tId);
-                        tjiVars.add(tji);
-                        grbModel.addConstr(tji, GRB.EQUAL, aCell, "");
-                        if (instantiatedCells.add(cell)) {
-                            cellsToVisit.add(cell);
-                        }
-                    }
-                    GRBLinExpr tjis = new GRBLinExpr();
-                    for (var tji : tjiVars) {
-                        tjis.addTerm(1, tji);
+        for (var deleted : deletedCells) {
+            var deletedId = graph.id(deleted);
+            if (instantiatedCells.mark(deletedId)) {
+                cell2Var[deletedId] = numVars;
+                reached[numVars++] = deletedId;
+                cellsToVisit.addLast(deletedId);
+            }
+            while (!cellsToVisit.isEmpty()) {
+                var curr = cellsToVisit.poll();
+                instantiationTime += graph.instantiationTime[curr];
+                numConstrs += graph.degree(curr);
+                for (int i = graph.memberStart[graph.edgeStart[curr]]; i < graph.memberStart[graph.edgeStart[curr + 1]]; i++) {
+                    var cell = graph.members[i];
+                    if (instantiatedCells.mark(cell)) {
+                        cell2Var[cell] = numVars;
+                        reached[numVars++] = cell;
+                        cellsToVisit.addLast(cell);
                     }
-                    grbModel.addConstr(tjis, GRB.GREATER_EQUAL, bi, "");
                 }
             }
         }
 
+        var lb = new double[numVars];
+        var ub = new double[numVars];
+        var obj = new double[numVars];
+        var types = new char[numVars];
+        Arrays.fill(ub, 1);
+        Arrays.fill(obj, 1);
+        Arrays.fill(types, GRB.BINARY);
+        for (var deleted : deletedCells) {
+            lb[cell2Var[graph.id(deleted)]] = 1;
+        }
+        GRBModel grbModel = new GRBModel(ilpEnv());
+        // the objective coefficients are part of the variables, the default sense minimizes
+        var vars = grbModel.addVars(lb, ub, obj, types, null);
+
+        var constrs = new GRBLinExpr[numConstrs];
+        var senses = new char[numConstrs];
+        var rhs = new double[numConstrs];
+        Arrays.fill(senses, GRB.GREATER_EQUAL);
+        int constrIdx = 0;
+        for (int varIdx = 0; varIdx < numVars; varIdx++) {
+            var curr = reached[varIdx];
+            for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                var size = graph.memberStart[edge + 1] - graph.memberStart[edge];
+                var coeffs = new double[size + 1];
+                var terms = new GRBVar[size + 1];
+                for (int i = 0; i < size; i++) {
+                    coeffs[i] = 1;
+                    terms[i] = vars[cell2Var[graph.members[graph.memberStart[edge] + i]]];
+                }
+                coeffs[size] = -1;
+                terms[size] = vars[varIdx];
+                var expr = new GRBLinExpr();
+                expr.addTerms(coeffs, terms);
+                constrs[constrIdx++] = expr;
+            }
+        }
+        grbModel.addConstrs(constrs, senses, rhs, null);
+
         var stop = System.nanoTime();
-        Utils.ilpTimes[2] += stop - start;
+        Utils.add(Utils.ilpTimes, 2, stop - start);
+        Utils.add(Utils.ilpTimes, 1, instantiationTime);
+
+        // warm start from the tree dp selection, which is feasible and never larger than the set of optimalDelete
+        var roots = new int[deletedCells.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = graph.id(deletedCells.get(i));
+        }
+        var order = new int[graph.numCells()];
+        var orderSize = graph.postOrder(roots, order);
+        var startValues = new double[numVars];
+        for (var cell : graph.treeDpSelection(order, orderSize, roots)) {
+            startValues[cell2Var[cell]] = 1;
+        }
+        grbModel.set(GRB.DoubleAttr.Start, vars, startValues);
+        setIlpParameters(grbModel);
 
-        grbModel.setObjective(obj, GRB.MINIMIZE);
         grbModel.optimize();
 
-        if (grbModel.get(GRB.IntAttr.Status) == 3) {
-            throw new GRBException("Infeasible grbModel");
+        if (grbModel.get(GRB.IntAttr.Status) == GRB.Status.INFEASIBLE) {
+            throw new GRBException("Infeasible model");
+        }
+        // a time limit keeps the best incumbent, which is at least the warm start
+        if (grbModel.get(GRB.IntAttr.SolCount) == 0) {
+            throw new GRBException("No solution found");
         }
+        Utils.addGap(grbModel.get(GRB.DoubleAttr.MIPGap));
 
-        for (var cellEntry : cell2Id.entrySet()) {
-            if (grbModel.getVarByName("a" + cellEntry.getValue()).get(GRB.DoubleAttr.X) == 1d) {
-                toDelete.add(cellEntry.getKey());
+        var toDelete = new HashSet<Cell>();
+        var values = grbModel.get(GRB.DoubleAttr.X, vars);
+        for (int varIdx = 0; varIdx < numVars; varIdx++) {
+            if (values[varIdx] > 0.5) {
+                toDelete.add(graph.cells[reached[varIdx]]);
             }
         }
         grbModel.dispose();
-        Utils.ilpTimes[3] += System.nanoTime() - stop;
-        Utils.ilpCounts[1] += cell2Id.size() - 1;
+        Utils.add(Utils.ilpTimes, 3, System.nanoTime() - stop);
+        Utils.add(Utils.ilpCounts, 1, numVars - deletedCells.size());
 
-        if (ConfigParameter.measureMemory) {
-            Utils.ilpCounts[3] += measureILPMemory(model, deleted);
-        }
         return toDelete;
     }
 
+    static void setIlpParameters(GRBModel grbModel) throws GRBException {
+        if (ConfigParameter.ilpTimeLimit > 0) {
+            grbModel.set(GRB.DoubleParam.TimeLimit, ConfigParameter.ilpTimeLimit);
+        }
+        grbModel.set(GRB.DoubleParam.MIPGap, ConfigParameter.ilpMipGap);
+        grbModel.set(GRB.IntParam.Threads, ConfigParameter.ilpThreads);
+    }
+
     private static long measureILPMemory(InstantiatedModel model, Cell deleted) {
         long size = 0;
-        LinkedList<Cell> cellsToVisit = new LinkedList<>();
-        HashSet<Cell> instantiatedCells = new HashSet<>();
-        cellsToVisit.add(deleted);
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var cellsToVisit = workspace.queue;
+        var instantiatedCells = workspace.visited;
+        cellsToVisit.addLast(graph.id(deleted));
         while (!cellsToVisit.isEmpty()) {
             var curr = cellsToVisit.poll();
             // per cell: 4 bytes for the table index, 4 bytes for the row index, 4 bytes insertionTime, 1 byte decision variable aj, pointer for objective
             size += 4 + 4 + 4 + 1 + 8;
-            var edges = model.cell2Edge.get(curr);
-            if (edges != null) {
-                for (var edge : edges) {
-                    // 1 byte decision variable bi, 1 byte decision variable hij, constr aj = hij, constr bi = hij, 1byte decision variable + constr tji = aj + constr SUM(tji) >= bi per element in hyperedge
-                    size += 1L + 1L + 16L + 16L + edge.size() * (1L + 16L + 8L) + 8L;
-                    for (var cell : edge) {
-                        if (instantiatedCells.add(cell)) {
-                            cellsToVisit.add(cell);
-                        }
+            for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                // constr SUM(ai) - aj >= 0: 8 bytes coefficient + 8 bytes pointer per element in hyperedge and for aj, 8 bytes right hand side
+                size += (graph.memberStart[edge + 1] - graph.memberStart[edge] + 1) * (8L + 8L) + 8L;
+                for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+                    if (instantiatedCells.mark(graph.members[i])) {
+                        cellsToVisit.addLast(graph.members[i]);
                     }
                 }
             }
@@ -638,252 +942,248 @@ public class Main {
     }
 
     static HashSet<Cell> batchedIlpApproach(InstantiatedModel model, ArrayList<Cell> deletedCells) throws GRBException {
-        Utils.ilpTimes[2] += model.modelConstructionTime;
-        var start = System.nanoTime();
+        return ComponentSolver.solve(model, deletedCells, Main::solveIlp);
+    }
 
-        var toDelete = new HashSet<Cell>();
-        GRBModel grbModel = new GRBModel(env);
-        GRBLinExpr obj = new GRBLinExpr();
-        HashMap<Cell, Integer> cell2Id = new HashMap<>();
-        HashMap<Cell, GRBVar> cell2Var = new HashMap<>();
-        int maxId = 0;
-        int edgeCounter = -1;
+    static HashSet<Cell> branchAndBoundDelete(InstantiatedModel model, Cell deleted) {
+        var toDelete = solveBranchAndBound(model, List.of(deleted));
+        if (ConfigParameter.measureMemory) {
+            Utils.branchAndBoundCounts[3] += measureBranchAndBoundMemory(model.graph);
+        }
+        return toDelete;
+    }
 
-        HashSet<Cell> instantiatedCells = new HashSet<>();
-        Queue<Cell> cellsToVisit = new LinkedList<>();
+    static HashSet<Cell> batchedBranchAndBoundDelete(InstantiatedModel model, ArrayList<Cell> deletedCells) {
+        return ComponentSolver.solve(model, deletedCells, Main::solveBranchAndBound);
+    }
 
-        for (var deleted : deletedCells) {
-            if (instantiatedCells.add(deleted)) {
-                int initialTId = maxId;
-                cell2Id.put(deleted, maxId++);
-                cell2Var.put(deleted, grbModel.addVar(1, 1, 0, GRB.BINARY, "a" + initialTId));
+    private static HashSet<Cell> solveBranchAndBound(InstantiatedModel model, List<Cell> deletedCells) {
+        Utils.add(Utils.branchAndBoundCounts, 1, model.instantiationTime.size() - deletedCells.size());
+        Utils.add(Utils.branchAndBoundTimes, 2, model.modelConstructionTime);
 
-                cellsToVisit.add(deleted);
-                while (!cellsToVisit.isEmpty()) {
-                    var curr = cellsToVisit.poll();
+        var start = System.nanoTime();
+        var graph = model.graph;
+        var roots = new int[deletedCells.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = graph.id(deletedCells.get(i));
+        }
+        var toDelete = new HashSet<Cell>();
+        for (var cell : BranchAndBound.solve(graph, roots)) {
+            toDelete.add(graph.cells[cell]);
+        }
+        Utils.add(Utils.branchAndBoundTimes, 3, System.nanoTime() - start);
+        Utils.add(Utils.branchAndBoundTimes, 1, sum(graph.instantiationTime));
+        return toDelete;
+    }
 
-                    int currId = cell2Id.get(curr);
-                    GRBVar aj = cell2Var.get(curr);
-                    obj.addTerm(1, aj);
-
-                    Utils.ilpTimes[1] += model.instantiationTime.getOrDefault(curr, 0L);
-
-                    var edges = model.cell2Edge.get(curr);
-                    if (edges != null) {
-                        for (var edge : edges) {
-                            var bi = grbModel.addVar(0, 1, 0, GRB.BINARY, "b" + ++edgeCounter);
-                            var hij = grbModel.addVar(0, 1, 0, GRB.BINARY, "h" + edgeCounter + currId);
-                            grbModel.addConstr(aj, GRB.EQUAL, hij, "");
-                            grbModel.addConstr(bi, GRB.EQUAL, hij, "");
-                            var tjiVars = new ArrayList<GRBVar>(edge.size());
-                            for (var cell : edge) {
-                                int tId;
-                                GRBVar aCell;
-                                if (cell2Id.get(cell) == null) {
-                                    tId = maxId;
-                                    cell2Id.put(cell, maxId++);
-                                    aCell = grbModel.addVar(0, 1, 0, GRB.BINARY, "a" + tId);
-                                    cell2Var.put(cell, aCell);
-                                } else {
-                                    tId = cell2Id.get(cell);
-                                    aCell = cell2Var.get(cell);
-                                }
-
-                                var tji = grbModel.addVar(0, 1, 0, GRB.BINARY, "t" + edgeCounter + tId);
-                                tjiVars.add(tji);
-                                grbModel.addConstr(tji, GRB.EQUAL, aCell, "");
-                                if (instantiatedCells.add(cell)) {
-                                    cellsToVisit.add(cell);
-                                }
-                            }
-                            GRBLinExpr tjis = new GRBLinExpr();
-                            for (var tji : tjiVars) {
-                                tjis.addTerm(1, tji);
-                            }
-                            grbModel.addConstr(tjis, GRB.GREATER_EQUAL, bi, "");
-                        }
-                    }
-                }
-            } else {
-                int tId = cell2Id.get(deleted);
-                grbModel.update();
-                var aCell = grbModel.getVarByName("a" + tId);
-                aCell.set(GRB.DoubleAttr.LB, 1);
-            }
+    private static long measureBranchAndBoundMemory(CompactHypergraph graph) {
+        // per cell: 4 bytes for the table index, 4 bytes for the row index, 4 bytes insertionTime, 2 bytes state (chosen, forbidden), 4 bytes residual and 4 bytes on the trail
+        long size = graph.numCells() * (4 + 4 + 4 + 2 + 4 + 4L);
+        // per edge: 4 bytes for its start and 4 bytes hit counter, per member 4 bytes and 4 bytes for the occurrence index
+        size += graph.numEdges() * (4 + 4L) + graph.members.length * (4 + 4L);
+        return size;
+    }
+
+    static HashSet<Cell> lpRoundingDelete(InstantiatedModel model, Cell deleted) {
+        var toDelete = solveLpRounding(model, List.of(deleted));
+        if (ConfigParameter.measureMemory) {
+            Utils.lpCounts[3] += measureLpMemory(model.graph);
         }
+        return toDelete;
+    }
 
-        var stop = System.nanoTime();
-        Utils.ilpTimes[2] += stop - start;
+    static HashSet<Cell> batchedLpRoundingDelete(InstantiatedModel model, ArrayList<Cell> deletedCells) {
+        return ComponentSolver.solve(model, deletedCells, Main::solveLpRounding);
+    }
 
-        grbModel.setObjective(obj, GRB.MINIMIZE);
-        grbModel.optimize();
+    private static HashSet<Cell> solveLpRounding(InstantiatedModel model, List<Cell> deletedCells) {
+        Utils.add(Utils.lpCounts, 1, model.instantiationTime.size() - deletedCells.size());
+        Utils.add(Utils.lpTimes, 2, model.modelConstructionTime);
 
-        if (grbModel.get(GRB.IntAttr.Status) == 3) {
-            throw new GRBException("Infeasible model");
+        var start = System.nanoTime();
+        var graph = model.graph;
+        var roots = new int[deletedCells.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = graph.id(deletedCells.get(i));
         }
-
-        for (var cellEntry : cell2Id.entrySet()) {
-            if (grbModel.getVarByName("a" + cellEntry.getValue()).get(GRB.DoubleAttr.X) == 1d) {
-                toDelete.add(cellEntry.getKey());
-            }
+        var solver = LpRounding.solve(graph, roots);
+        var toDelete = new HashSet<Cell>();
+        for (var cell : solver.deletion) {
+            toDelete.add(graph.cells[cell]);
         }
+        Utils.addLpBound(solver.lowerBound, solver.deletion.length);
+        Utils.add(Utils.lpTimes, 3, System.nanoTime() - start);
+        Utils.add(Utils.lpTimes, 1, sum(graph.instantiationTime));
+        return toDelete;
+    }
 
-        grbModel.dispose();
-        Utils.ilpTimes[3] += System.nanoTime() - stop;
-        Utils.ilpCounts[1] += cell2Id.size() - deletedCells.size();
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (var value : values) {
+            sum += value;
+        }
+        return sum;
+    }
 
-        return toDelete;
+    private static long measureLpMemory(CompactHypergraph graph) {
+        // per cell: 4 bytes for the table index, 4 bytes for the row index, 4 bytes insertionTime, 1 byte state, 8 bytes reduced cost and 8 bytes fractional value
+        long size = graph.numCells() * (4 + 4 + 4 + 1 + 8 + 8L);
+        // per edge: 4 bytes for its start, 4 bytes owner, 8 bytes multiplier and 8 bytes subgradient, per member 4 bytes
+        size += graph.numEdges() * (4 + 4 + 8 + 8L) + graph.members.length * 4L;
+        return size;
     }
 
-    private static HashSet<Cell> approximateDelete(InstantiatedModel model, Cell deleted) {
-        Cell lastCell = null;
+    static HashSet<Cell> approximateDelete(InstantiatedModel model, Cell deleted) {
+        int lastCell = -1;
         var start = System.nanoTime();
-        HashSet<Cell> edgesInstantiated = new HashSet<>();
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var edgesInstantiated = workspace.visited;
+        var nodesInstantiated = workspace.secondary;
+        var deletedCells = workspace.tertiary;
         var toDelete = new HashSet<Cell>();
         toDelete.add(deleted);
-        HashSet<Cell> nodesInstantiated = new HashSet<>();
 
-        Queue<Cell> cellsToVisit = new LinkedList<>();
-        cellsToVisit.add(deleted);
-        edgesInstantiated.add(deleted);
-        nodesInstantiated.add(deleted);
+        var root = graph.id(deleted);
+        var cellsToVisit = workspace.queue;
+        cellsToVisit.addLast(root);
+        edgesInstantiated.mark(root);
+        nodesInstantiated.mark(root);
+        deletedCells.mark(root);
 
         while (!cellsToVisit.isEmpty()) {
             var curr = cellsToVisit.poll();
 
-            var edges = model.cell2Edge.get(curr);
-            if (edges != null) {
-                for (var edge : edges) {
-                    Cell minCell = null;
-                    nodesInstantiated.addAll(edge);
-                    for (var cell : edge) {
-                        edgesInstantiated.add(cell);
-                        for (var grandChildren : model.cell2Edge.getOrDefault(cell, EMPTY_LIST)) {
-                            nodesInstantiated.addAll(grandChildren);
-                        }
-                        if (minCell == null || model.cell2Edge.getOrDefault(cell, EMPTY_LIST).size() < model.cell2Edge.getOrDefault(minCell, EMPTY_LIST).size()) {
-                            minCell = cell;
-                            edge.minCell = cell;
-                        }
+            for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                int minCell = -1;
+                for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+                    var cell = graph.members[i];
+                    nodesInstantiated.mark(cell);
+                    edgesInstantiated.mark(cell);
+                    for (int j = graph.memberStart[graph.edgeStart[cell]]; j < graph.memberStart[graph.edgeStart[cell + 1]]; j++) {
+                        nodesInstantiated.mark(graph.members[j]);
                     }
-                    if (toDelete.add(minCell)) {
-                        lastCell = minCell;
-                        cellsToVisit.add(minCell);
+                    if (minCell == -1 || graph.degree(cell) < graph.degree(minCell)) {
+                        minCell = cell;
                     }
                 }
+                if (deletedCells.mark(minCell)) {
+                    toDelete.add(graph.cells[minCell]);
+                    lastCell = minCell;
+                    cellsToVisit.addLast(minCell);
+                }
             }
         }
 
         Utils.approximateTimes[2] += System.nanoTime() - start;
         Utils.approximateCounts[1] += nodesInstantiated.size() - 1;
-        int count = 0;
-        for (var level : model.treeLevels) {
-            if (level.contains(lastCell)) break;
-            count++;
-        }
+        int count = graph.level(lastCell);
 //        Utils.approximateCounts[2] += model.treeLevels.size() - count;
         if (ConfigParameter.measureMemory) {
-            Utils.approximateCounts[3] += measureApproximateMemory(model, nodesInstantiated, edgesInstantiated);
+            Utils.approximateCounts[3] += measureApproximateMemory(graph, nodesInstantiated, edgesInstantiated);
         }
-        for (var cell : edgesInstantiated) {
-            Utils.approximateTimes[1] += model.instantiationTime.getOrDefault(cell, 0L);
+        for (int cell = 0; cell < graph.numCells(); cell++) {
+            if (edgesInstantiated.isMarked(cell)) {
+                Utils.approximateTimes[1] += graph.instantiationTime[cell];
+            }
         }
 
         return toDelete;
     }
 
-    private static long measureApproximateMemory(InstantiatedModel model, HashSet<Cell> nodesInstantiated, HashSet<Cell> edgesInstantiated) {
+    private static long measureApproximateMemory(CompactHypergraph graph, CompactHypergraph.Marks nodesInstantiated, CompactHypergraph.Marks edgesInstantiated) {
         long size = 0;
 
         // per cell: 4 bytes for the table index, 4 bytes for the row index, 4 bytes insertionTime, 1 byte state (deleted) and 4 bytes cost
         size += nodesInstantiated.size() * (4 + 4 + 4 + 1L);
 
-        for (var cell : edgesInstantiated) {
-            var edges = model.cell2Edge.getOrDefault(cell, EMPTY_LIST);
-            for (var edge : edges) {
-                size += edge.size() * 8L + 8L + 4L;
+        for (int cell = 0; cell < graph.numCells(); cell++) {
+            if (edgesInstantiated.isMarked(cell)) {
+                for (int edge = graph.edgeStart[cell]; edge < graph.edgeStart[cell + 1]; edge++) {
+                    size += (graph.memberStart[edge + 1] - graph.memberStart[edge]) * 8L + 8L + 4L;
+                }
             }
         }
         return size;
     }
 
     static HashSet<Cell> batchedApproximateDelete(InstantiatedModel model, ArrayList<Cell> deletedCells) throws Exception {
+        return ComponentSolver.solve(model, deletedCells, Main::solveApproximate);
+    }
+
+    private static HashSet<Cell> solveApproximate(InstantiatedModel model, List<Cell> deletedCells) {
         var start = System.nanoTime();
-        HashSet<Cell> instantiatedCells = new HashSet<>();
+        var graph = model.graph;
+        var workspace = CompactHypergraph.Workspace.get(graph);
+        var instantiatedCells = workspace.visited;
+        // every cell is expanded once, its cheapest members do not change on a second visit
+        var expandedCells = workspace.secondary;
+        var cellsToVisit = workspace.queue;
 
         for (var deleted : deletedCells) {
-            if (instantiatedCells.add(deleted)) {
-                Queue<Cell> cellsToVisit = new LinkedList<>();
-                cellsToVisit.add(deleted);
+            var deletedId = graph.id(deleted);
+            instantiatedCells.mark(deletedId);
+            // deleted cells that were only seen as members of an edge are expanded as well
+            if (expandedCells.mark(deletedId)) {
+                cellsToVisit.addLast(deletedId);
 
                 while (!cellsToVisit.isEmpty()) {
                     var curr = cellsToVisit.poll();
 
-                    var edges = model.cell2Edge.get(curr);
-                    if (edges != null) {
-                        for (var edge : edges) {
-                            Cell minCell = null;
-                            for (var cell : edge) {
-                                instantiatedCells.add(cell);
-                                if (minCell == null || model.cell2Edge.getOrDefault(cell, EMPTY_LIST).size() < model.cell2Edge.getOrDefault(minCell, EMPTY_LIST).size()) {
-                                    minCell = cell;
-                                }
+                    for (int edge = graph.edgeStart[curr]; edge < graph.edgeStart[curr + 1]; edge++) {
+                        int minCell = -1;
+                        for (int i = graph.memberStart[edge]; i < graph.memberStart[edge + 1]; i++) {
+                            var cell = graph.members[i];
+                            instantiatedCells.mark(cell);
+                            if (minCell == -1 || graph.degree(cell) < graph.degree(minCell)) {
+                                minCell = cell;
                             }
-                            edge.minCell = minCell;
-                            cellsToVisit.add(minCell);
+                        }
+                        workspace.edgeMin[edge] = minCell;
+                        if (expandedCells.mark(minCell)) {
+                            cellsToVisit.addLast(minCell);
                         }
                     }
                 }
             }
         }
 
-        for (var deleted : deletedCells) {
-            var parents = model.cell2Parents.get(deleted);
-            for (var parent : parents) {
-                for (var edge : model.cell2Edge.get(parent)) {
-                    if (edge.contains(deleted)) {
-                        edge.minCell = deleted;
-                    }
-                }
+        preferDeletedCells(graph, deletedCells, workspace.edgeMin);
+        var toDelete = collectDeletion(graph, deletedCells, workspace);
+        Utils.add(Utils.approximateTimes, 2, System.nanoTime() - start);
+        Utils.add(Utils.approximateCounts, 1, instantiatedCells.size() - deletedCells.size());
+
+        long instantiationTime = 0;
+        for (int cell = 0; cell < graph.numCells(); cell++) {
+            if (instantiatedCells.isMarked(cell)) {
+                instantiationTime += graph.instantiationTime[cell];
             }
         }
+        Utils.add(Utils.approximateTimes, 1, instantiationTime);
 
-        HashSet<Cell> toDelete = new HashSet<>();
-        for (var deleted : deletedCells) {
-            Queue<Cell> cellsToVisit = new LinkedList<>();
-            cellsToVisit.add(deleted);
-
-            while (!cellsToVisit.isEmpty()) {
-                var currCell = cellsToVisit.poll();
+        return toDelete;
+    }
 
-                if (toDelete.add(currCell)) {
-                    var edges = model.cell2Edge.get(currCell);
-                    if (edges != null) {
-                        for (var edge : edges) {
-                            cellsToVisit.add(edge.minCell);
-                        }
-                    }
-                }
-            }
+    // the attribute of a rule with the given names, or null, the names of clients must not register new attributes
+    static Attribute knownAttribute(String table, String attribute) {
+        if (!tableName2keyCol.containsKey(table)) {
+            return null;
         }
-        Utils.approximateTimes[2] += System.nanoTime() - start;
-        Utils.approximateCounts[1] += instantiatedCells.size() - deletedCells.size();
-
-        for (var cell : instantiatedCells) {
-            Utils.approximateTimes[1] += model.instantiationTime.getOrDefault(cell, 0L);
+        var known = Attribute.find(table, attribute);
+        if (known == null || !(attributeInHead.containsKey(known) || attributeInTail.containsKey(known) || derivedAttributes.contains(known))) {
+            return null;
         }
-
-        return toDelete;
+        return known;
     }
 
-    private static void parseSchema() throws IOException {
+    static void parseSchema() throws IOException {
         var parser = CSVFormat.DEFAULT.parse(Files.newBufferedReader(Paths.get(ConfigParameter.configPath, ConfigParameter.schemaFile)));
         for (var record : parser) {
             tableName2keyCol.put(record.get(0), record.get(1));
         }
     }
 
-    private static void parseRules() throws Exception {
+    static void parseRules() throws Exception {
         var parser = CSVFormat.DEFAULT.parse(Files.newBufferedReader(Paths.get(ConfigParameter.configPath, ConfigParameter.ruleFile)));
         for (var record : parser) {
             var rule = parseRule(record);
@@ -895,7 +1195,7 @@ public class Main {
         }
     }
 
-    private static void parseDerivedData() throws Exception {
+    static void parseDerivedData() throws Exception {
         var parser = CSVFormat.DEFAULT.parse(Files.newBufferedReader(Paths.get(ConfigParameter.configPath, ConfigParameter.derivedFile)));
         for (var record : parser) {
             var rule = parseRule(record);
@@ -0,0 +1,118 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ParallelInstatiator extends Instatiator {
+    // every worker owns its own connection, so at most numWorkers rule queries run at the same time
+    final ArrayBlockingQueue<Instatiator> workers;
+    final int numWorkers;
+    final ExecutorService executor;
+
+    public ParallelInstatiator(HashMap<Attribute, ArrayList<Rule>> attributeInHead, HashMap<Attribute, ArrayList<Rule>> attributeInTail, HashMap<String, String> tableName2keyCol, int numWorkers) throws SQLException {
+        super(attributeInHead, attributeInTail, tableName2keyCol);
+        this.numWorkers = numWorkers;
+        workers = new ArrayBlockingQueue<>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            workers.add(new Instatiator(attributeInHead, attributeInTail, tableName2keyCol));
+        }
+        executor = Executors.newFixedThreadPool(numWorkers, r -> {
+            var thread = new Thread(r, "instantiation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void useGraphCache(DependencyGraphCache graphCache) {
+        super.useGraphCache(graphCache);
+        for (var worker : workers) {
+            worker.useGraphCache(graphCache);
+        }
+    }
+
+    @Override
+    public void useInstantiationCache(InstantiationCache instantiationCache) {
+        super.useInstantiationCache(instantiationCache);
+        for (var worker : workers) {
+            worker.useInstantiationCache(instantiationCache);
+        }
+    }
+
+    // the workers are idle between calls, so the pool stops right away
+    @Override
+    public void close() throws SQLException {
+        executor.shutdown();
+        SQLException failure = null;
+        for (var worker : workers) {
+            try {
+                worker.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        try {
+            super.close();
+        } catch (SQLException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public HashMap<Cell, ArrayList<HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) throws SQLException {
+        // split small levels as well, otherwise a level below the batch size would be handled by a single worker
+        var chunkSize = Math.max(1, Math.min(ConfigParameter.instantiationBatchSize, (cells.size() + numWorkers - 1) / numWorkers));
+        var chunks = chunkByAttribute(cells, chunkSize);
+        if (chunks.size() <= 1) {
+            return super.instantiateAttachedCells(cells, sourceInsertionTime);
+        }
+
+        var futures = new ArrayList<Future<HashMap<Cell, ArrayList<HyperEdge>>>>(chunks.size());
+        for (var chunk : chunks) {
+            futures.add(executor.submit(() -> {
+                var worker = workers.take();
+                try {
+                    var chunkResult = new HashMap<Cell, ArrayList<HyperEdge>>(chunk.keys.size());
+                    worker.instantiateChunk(chunk, sourceInsertionTime, chunkResult);
+                    return chunkResult;
+                } finally {
+                    workers.put(worker);
+                }
+            }));
+        }
+
+        // chunks cover disjoint cells, so merging their results on the calling thread yields the sequential result
+        var result = new HashMap<Cell, ArrayList<HyperEdge>>(cells.size());
+        try {
+            for (var future : futures) {
+                result.putAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while instantiating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Instantiation failed", e.getCause());
+        }
+        return result;
+    }
+}
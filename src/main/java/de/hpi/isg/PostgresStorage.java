@@ -0,0 +1,89 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.util.PGobject;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+public class PostgresStorage implements Storage {
+    private static final Pattern PLAN_COST = Pattern.compile("cost=[\\d.]+\\.\\.([\\d.]+)");
+
+    @Override
+    public Connection connect() throws SQLException {
+        var properties = new Properties();
+        properties.setProperty("user", ConfigParameter.username);
+        properties.setProperty("password", ConfigParameter.password);
+        // keys are bound as strings but compared against typed key columns, just like the former quoted literals
+        properties.setProperty("stringtype", "unspecified");
+        properties.setProperty("prepareThreshold", "1");
+        return DriverManager.getConnection(ConfigParameter.connectionUrl + ConfigParameter.database, properties);
+    }
+
+    @Override
+    public String keyType(Connection c, String table, String keyCol) throws SQLException {
+        try (var stmt = c.prepareStatement("SELECT format_type(atttypid, atttypmod) FROM pg_attribute WHERE attrelid = CAST(? AS regclass) AND attname = ?")) {
+            stmt.setString(1, table);
+            stmt.setString(2, keyCol.toLowerCase());
+            try (var rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Unknown key column of table " + table);
+                }
+                return rs.getString(1);
+            }
+        }
+    }
+
+    @Override
+    public String anyKey(String column, String keyType) {
+        return column + " = ANY(CAST(? AS " + keyType + "[]))";
+    }
+
+    @Override
+    public Array keyArray(Connection c, Collection<String> keys) throws SQLException {
+        return c.createArrayOf("text", keys.toArray());
+    }
+
+    @Override
+    public void bindValue(PreparedStatement stmt, int idx, Cell cell) throws SQLException {
+        if (cell.attribute.attribute.equals("payload")) {
+            PGobject jsonObject = new PGobject();
+            jsonObject.setType("json");
+            jsonObject.setValue(cell.value);
+            stmt.setObject(idx, jsonObject);
+        } else {
+            Storage.super.bindValue(stmt, idx, cell);
+        }
+    }
+
+    @Override
+    public Writer bulkWriter(Connection c, String table) throws SQLException {
+        var out = new PGCopyOutputStream(c.unwrap(PGConnection.class), "COPY " + table + " FROM STDIN WITH (FORMAT csv)");
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public String analyze(String table) {
+        return "ANALYZE " + table;
+    }
+
+    @Override
+    public String catalogName(String name) {
+        return name.toLowerCase();
+    }
+
+    // the first row holds the estimated startup and total cost of the whole plan
+    @Override
+    public String planCost(String plan) {
+        var matcher = PLAN_COST.matcher(plan);
+        return matcher.find() ? "cost " + matcher.group(1) : "unknown cost";
+    }
+}
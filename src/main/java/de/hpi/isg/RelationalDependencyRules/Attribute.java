@@ -1,12 +1,44 @@
 package de.hpi.isg.RelationalDependencyRules;
 
+import java.util.HashMap;
+
 public class Attribute {
-    public String table;
-    public String attribute;
+    // attribute ids are handed out once per table and attribute name, while the rules are parsed
+    // attributes are only registered by the rules and the schema, requests of clients look them up with find
+    private static final HashMap<String, Integer> NAME2ID = new HashMap<>();
+    public static final int MAX_ATTRIBUTES = 1 << 16;
+
+    public final String table;
+    public final String attribute;
+    public final int id;
 
     public Attribute(String table, String attribute) {
         this.table = table;
         this.attribute = attribute;
+        this.id = register(this);
+    }
+
+    private static synchronized int register(Attribute attribute) {
+        var name = attribute.table + "." + attribute.attribute;
+        var id = NAME2ID.get(name);
+        if (id == null) {
+            id = NAME2ID.size();
+            if (id >= MAX_ATTRIBUTES) {
+                throw new IllegalStateException("Too many attributes");
+            }
+            NAME2ID.put(name, id);
+        }
+        return id;
+    }
+
+    // the registered attribute, or null, without registering a new one
+    public static Attribute find(String table, String attribute) {
+        synchronized (Attribute.class) {
+            if (!NAME2ID.containsKey(table + "." + attribute)) {
+                return null;
+            }
+        }
+        return new Attribute(table, attribute);
     }
 
     @Override
@@ -19,14 +51,11 @@ public class Attribute {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Attribute attribute1 = (Attribute) o;
-
-        if (!table.equals(attribute1.table)) return false;
-        return attribute.equals(attribute1.attribute);
+        return id == ((Attribute) o).id;
     }
 
     @Override
     public int hashCode() {
-        return 31 * table.hashCode() + attribute.hashCode();
+        return id;
     }
 }
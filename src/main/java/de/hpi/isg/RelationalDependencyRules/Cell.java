@@ -1,35 +1,89 @@
 package de.hpi.isg.RelationalDependencyRules;
 
+import java.lang.ref.WeakReference;
 import java.util.HashSet;
-import java.util.Objects;
+import java.util.WeakHashMap;
 
 public class Cell implements Comparable<Cell> {
     public static class HyperEdge extends HashSet<Cell> {
         public HyperEdge(int capacity) {
             super(capacity, 1f);
         }
+    }
+
+    // identity layout: 16 bits attribute id | 1 bit dictionary flag | 46 bits numeric key or dictionary id
+    private static final int KEY_BITS = 47;
+    private static final long DICTIONARY_FLAG = 1L << (KEY_BITS - 1);
+    private static final long MAX_KEY = DICTIONARY_FLAG - 1;
+    // the dictionary refers to its key strings weakly, an entry is dropped once no cell holds its key any more,
+    // so a resident process only keeps the keys of live cells, ids are never handed out twice
+    private static final WeakHashMap<String, DictionaryKey> DICTIONARY = new WeakHashMap<>();
+    private static long nextKeyId = 0;
+
+    private static final class DictionaryKey {
+        final long id;
+        final WeakReference<String> key;
 
-        public Cell minCell = null;
+        DictionaryKey(long id, String key) {
+            this.id = id;
+            this.key = new WeakReference<>(key);
+        }
     }
 
-    public Attribute attribute;
-    public String key;
+    public final Attribute attribute;
+    public final String key;
+    // packed attribute and key, equal cells have equal identities
+    public final long identity;
 
     public String value;
     public long insertionTime;
-    public long cost = Integer.MAX_VALUE;
 
     public Cell(Attribute attribute, String key) {
         this.attribute = attribute;
-        this.key = key;
+        var numeric = parseCanonicalKey(key);
+        if (numeric >= 0) {
+            this.key = key;
+            this.identity = ((long) attribute.id << KEY_BITS) | numeric;
+            return;
+        }
+        // numeric keys are stored as they are, all others are dictionary encoded and share one key string
+        synchronized (DICTIONARY) {
+            var entry = DICTIONARY.get(key);
+            var canonical = entry == null ? null : entry.key.get();
+            if (canonical == null) {
+                if (nextKeyId > MAX_KEY) {
+                    throw new IllegalStateException("Key dictionary is full");
+                }
+                entry = new DictionaryKey(nextKeyId++ | DICTIONARY_FLAG, key);
+                DICTIONARY.put(key, entry);
+                canonical = key;
+            }
+            this.key = canonical;
+            this.identity = ((long) attribute.id << KEY_BITS) | entry.id;
+        }
     }
 
     public Cell(Attribute attribute, String key, String value) {
-        this.attribute = attribute;
-        this.key = key;
+        this(attribute, key);
         this.value = value;
     }
 
+    private static long parseCanonicalKey(String key) {
+        var length = key.length();
+        if (length == 0 || length > 14 || (length > 1 && key.charAt(0) == '0')) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            var digit = key.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result <= MAX_KEY ? result : -1;
+    }
+
     @Override
     public String toString() {
         return attribute.toString() + "[" + key + "] => " + value;
@@ -45,18 +99,11 @@ public class Cell implements Comparable<Cell> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Cell cell = (Cell) o;
-
-        if (!attribute.equals(cell.attribute)) return false;
-        if (!key.equals(cell.key)) return false;
-        return Objects.equals(value, cell.value);
+        return identity == ((Cell) o).identity;
     }
 
     @Override
     public int hashCode() {
-        int result = attribute.hashCode();
-        result = 31 * result + key.hashCode();
-        result = 31 * result + (value != null ? value.hashCode() : 0);
-        return result;
+        return Long.hashCode(identity);
     }
 }
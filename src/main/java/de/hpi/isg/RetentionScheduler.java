@@ -0,0 +1,360 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+// erases cells online once their retention period is over, the cells are handed to the erasure service in groups
+// a cell inserted at t has to be erased between t + retentionPeriod and t + retentionPeriod + retentionGracePeriod,
+// consecutive cells share a group as long as the group can wait for the latest start of their intervals and still leave
+// retentionMargin ms for queueing and solving before the earliest end, the group fires once every cell of it expired
+// the groups wait in a timing wheel and are written to an append only log, so that a restart continues the pending groups
+// cells that fail are retried in a group of their own after retentionTick * 2^attempt ms, at most retentionMaxRetries times
+// a cell is scheduled with one line "table,attribute,key,insertionTime" on retentionPort, every line is answered in order
+// with "scheduled" or "error,<message>" with a quoted message if it holds a comma
+public class RetentionScheduler {
+    static final class Group {
+        final long id;
+        // earliest deadline of the cells
+        final long deadline;
+        // failed erasures of the cells so far, a retry waits until notBefore
+        final int attempt;
+        final long notBefore;
+        final ArrayList<Cell> cells = new ArrayList<>();
+        // latest expiry of the cells
+        long expiry = Long.MIN_VALUE;
+        // cells that are still with the erasure service
+        int pending;
+        final ArrayList<Cell> failed = new ArrayList<>();
+
+        Group(long id, long deadline, int attempt, long notBefore) {
+            this.id = id;
+            this.deadline = deadline;
+            this.attempt = attempt;
+            this.notBefore = notBefore;
+        }
+
+        void add(Cell cell) {
+            cells.add(cell);
+            expiry = Math.max(expiry, cell.insertionTime + ConfigParameter.retentionPeriod);
+        }
+
+        long due() {
+            return Math.max(expiry, notBefore);
+        }
+    }
+
+    private final ErasureService service;
+    private final Path logPath;
+    private ScheduleLog log;
+    private final TimingWheel<Group> wheel;
+    // groups that are not erased yet
+    private final HashMap<Long, Group> groups = new HashMap<>();
+    // the group that takes new cells until it fires
+    private Group open;
+    private long nextGroupId = 0;
+    // the log is rewritten with the pending groups once it grows beyond this size
+    private long compactAt = 0;
+
+    public RetentionScheduler(ErasureService service, Path logPath) throws IOException {
+        this.service = service;
+        this.logPath = logPath;
+        wheel = new TimingWheel<>(ConfigParameter.retentionTick, System.currentTimeMillis());
+        recover();
+    }
+
+    // replays the log and rewrites it with the pending groups once groups were erased
+    private void recover() throws IOException {
+        var erasedGroups = new int[1];
+        log = new ScheduleLog(logPath);
+        log.replay(new ScheduleLog.Visitor() {
+            @Override
+            public void group(long id, long deadline, int attempt, long notBefore) {
+                groups.put(id, new Group(id, deadline, attempt, notBefore));
+                nextGroupId = Math.max(nextGroupId, id + 1);
+            }
+
+            @Override
+            public void cell(long groupId, Cell cell) {
+                var group = groups.get(groupId);
+                if (group != null) {
+                    group.add(cell);
+                }
+            }
+
+            @Override
+            public void erased(long groupId) {
+                groups.remove(groupId);
+                erasedGroups[0]++;
+            }
+        });
+        if (erasedGroups[0] > 0) {
+            compact();
+        } else {
+            compactAt = Math.max(ScheduleLog.INITIAL_SIZE, 2 * log.size());
+        }
+        // overdue groups fire with the first tick, their cells expired already
+        for (var group : groups.values()) {
+            enqueue(group);
+        }
+        System.out.println("recovered " + groups.size() + " pending groups");
+    }
+
+    // rewrites the log with the pending groups, the records of erased groups are dropped
+    private void compact() throws IOException {
+        var compactedPath = Paths.get(logPath + ".tmp");
+        Files.deleteIfExists(compactedPath);
+        var compacted = new ScheduleLog(compactedPath);
+        for (var group : new TreeMap<>(groups).values()) {
+            compacted.group(group.id, group.deadline, group.attempt, group.notBefore);
+            for (var cell : group.cells) {
+                compacted.cell(group.id, cell);
+            }
+        }
+        compacted.force();
+        // the mapping stays valid when its file is renamed
+        Files.move(compactedPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.close();
+        log = compacted;
+        compactAt = Math.max(ScheduleLog.INITIAL_SIZE, 2 * log.size());
+    }
+
+    public synchronized void schedule(Cell cell) {
+        var expiry = cell.insertionTime + ConfigParameter.retentionPeriod;
+        var deadline = expiry + ConfigParameter.retentionGracePeriod;
+        var group = open;
+        var created = false;
+        if (group == null || expiry > group.deadline - ConfigParameter.retentionMargin || deadline < group.deadline) {
+            group = newGroup(deadline, 0, expiry);
+            created = true;
+            // a cell that expires before the open group gets a group of its own, later cells still join the open group
+            if (open == null || expiry > open.deadline - ConfigParameter.retentionMargin) {
+                open = group;
+            }
+        }
+        group.add(cell);
+        try {
+            if (created) {
+                log.group(group.id, group.deadline, group.attempt, group.notBefore);
+            }
+            log.cell(group.id, cell);
+        } catch (IOException e) {
+            logFailed(e);
+        }
+        if (created) {
+            enqueue(group);
+        }
+    }
+
+    private Group newGroup(long deadline, int attempt, long notBefore) {
+        var group = new Group(nextGroupId++, deadline, attempt, notBefore);
+        groups.put(group.id, group);
+        return group;
+    }
+
+    // the wheel hands out whole ticks, so a group goes into the first tick that starts at or after its due time
+    private void enqueue(Group group) {
+        wheel.schedule(group.due() + ConfigParameter.retentionTick - 1, group);
+    }
+
+    // the groups in memory stay complete, the log is rewritten from them with the next erased group
+    private void logFailed(IOException e) {
+        System.out.println("could not write the schedule log: " + e.getMessage());
+        compactAt = 0;
+    }
+
+    // hands the due groups to the erasure service, every retentionTick ms
+    public void run() throws InterruptedException {
+        var due = new ArrayList<Group>();
+        while (true) {
+            Thread.sleep(ConfigParameter.retentionTick);
+            synchronized (this) {
+                var now = System.currentTimeMillis();
+                wheel.advance(now, group -> {
+                    // cells that joined after the group was scheduled expire later
+                    if (group.due() > now) {
+                        enqueue(group);
+                        return;
+                    }
+                    if (group == open) {
+                        open = null;
+                    }
+                    group.pending = group.cells.size();
+                    due.add(group);
+                });
+                log.force();
+            }
+            // the queue of the service blocks when it is full, so no lock is held while the groups are handed over
+            for (var group : due) {
+                if (group.cells.isEmpty()) {
+                    erased(group);
+                    continue;
+                }
+                for (int i = 0; i < group.cells.size(); i++) {
+                    var cell = group.cells.get(i);
+                    service.submit(new ErasureService.Request(group.id + "." + i, cell, line -> replied(group, cell, line)));
+                }
+            }
+            due.clear();
+        }
+    }
+
+    private synchronized void replied(Group group, Cell cell, String line) {
+        if (failed(line)) {
+            group.failed.add(cell);
+        }
+        if (--group.pending == 0) {
+            erased(group);
+        }
+    }
+
+    // an answer that cannot be read counts as failed, the cell is tried again
+    private static boolean failed(String line) {
+        try {
+            return ErasureService.status(line).equals("error");
+        } catch (IOException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    private synchronized void erased(Group group) {
+        groups.remove(group.id);
+        Group retry = null;
+        if (!group.failed.isEmpty()) {
+            if (group.attempt < ConfigParameter.retentionMaxRetries) {
+                var backoff = ConfigParameter.retentionTick << Math.min(group.attempt, 30);
+                retry = newGroup(group.deadline, group.attempt + 1, System.currentTimeMillis() + backoff);
+                for (var cell : group.failed) {
+                    retry.add(cell);
+                }
+                enqueue(retry);
+            } else {
+                System.out.println("gave up on " + group.failed.size() + " cells of group " + group.id + " after " + (group.attempt + 1) + " attempts");
+            }
+        }
+        try {
+            // the rewritten log holds neither the erased group nor a record of it
+            if (log.size() > compactAt) {
+                compact();
+                return;
+            }
+            if (retry != null) {
+                log.group(retry.id, retry.deadline, retry.attempt, retry.notBefore);
+                for (var cell : retry.cells) {
+                    log.cell(retry.id, cell);
+                }
+            }
+            log.erased(group.id);
+            log.force();
+        } catch (IOException e) {
+            // until the log is rewritten, a restart erases the group again
+            logFailed(e);
+        }
+    }
+
+    public void listen(int port) throws IOException {
+        var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        var acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    var socket = server.accept();
+                    var reader = new Thread(() -> read(socket), "retention-reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "retention-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void read(Socket socket) {
+        try (socket) {
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            var out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                out.write(schedule(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client is gone
+        }
+    }
+
+    // schedules the cell of one line, a broken line is answered with an error and leaves the connection open
+    private String schedule(String line) {
+        CSVRecord record;
+        try {
+            record = CSVFormat.DEFAULT.parse(new StringReader(line)).getRecords().get(0);
+        } catch (IOException | RuntimeException e) {
+            return error("malformed line");
+        }
+        if (record.size() != 4) {
+            return error("expected table,attribute,key,insertionTime");
+        }
+        // table and attribute end up in the sql of the instantiation, so only those of the rules are accepted
+        var attribute = Main.knownAttribute(record.get(0), record.get(1));
+        if (attribute == null) {
+            return error("unknown attribute " + record.get(0) + "." + record.get(1));
+        }
+        if (record.get(2).isEmpty()) {
+            return error("empty key");
+        }
+        long insertionTime;
+        try {
+            insertionTime = Long.parseLong(record.get(3));
+        } catch (NumberFormatException e) {
+            return error("insertion time is no number");
+        }
+        var cell = new Cell(attribute, record.get(2));
+        cell.insertionTime = insertionTime;
+        schedule(cell);
+        return "scheduled";
+    }
+
+    private static String error(String message) {
+        return CSVFormat.DEFAULT.format("error", message.replace('\n', ' '));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Main.initialize(args.length > 0 ? args[0] : "config.json");
+        ConfigParameter.measureMemory = false;
+        var instatiator = Main.createInstatiator();
+        var service = new ErasureService(instatiator);
+        var scheduler = new RetentionScheduler(service, Paths.get(ConfigParameter.retentionLog));
+        scheduler.listen(ConfigParameter.retentionPort);
+        System.out.println("scheduling on port " + ConfigParameter.retentionPort);
+        var ticker = new Thread(() -> {
+            try {
+                scheduler.run();
+            } catch (InterruptedException e) {
+                // shut down
+            }
+        }, "retention-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+        try {
+            service.run();
+        } finally {
+            instatiator.close();
+        }
+    }
+}
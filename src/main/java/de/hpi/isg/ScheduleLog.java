@@ -0,0 +1,157 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// append only log of the retention schedule in a memory mapped file
+// a record is [length][crc32][type][payload], the log ends at the first record of length 0 or with a wrong checksum,
+// so a record that was torn by a crash is dropped together with everything after it
+final class ScheduleLog implements Closeable {
+    static final byte GROUP = 1;
+    static final byte CELL = 2;
+    static final byte ERASED = 3;
+    private static final int HEADER = 4 + 4;
+    static final long INITIAL_SIZE = 1 << 20;
+
+    interface Visitor {
+        void group(long id, long deadline, int attempt, long notBefore);
+
+        void cell(long groupId, Cell cell);
+
+        void erased(long groupId);
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    // room for a record with three strings of the largest length
+    private final ByteBuffer record = ByteBuffer.allocate(1 << 18);
+    private final CRC32 crc = new CRC32();
+
+    ScheduleLog(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+    }
+
+    // visits the records in the order they were written and positions the log after the last one
+    void replay(Visitor visitor) {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER) {
+            var start = buffer.position();
+            var length = buffer.getInt();
+            var checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return;
+            }
+            var payload = buffer.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                return;
+            }
+            buffer.position(buffer.position() + length);
+            switch (payload.get()) {
+                case GROUP:
+                    visitor.group(payload.getLong(), payload.getLong(), payload.getInt(), payload.getLong());
+                    break;
+                case CELL:
+                    var groupId = payload.getLong();
+                    var attribute = Main.knownAttribute(getString(payload), getString(payload));
+                    var key = getString(payload);
+                    var insertionTime = payload.getLong();
+                    // the rules changed since the cell was logged
+                    if (attribute != null) {
+                        var cell = new Cell(attribute, key);
+                        cell.insertionTime = insertionTime;
+                        visitor.cell(groupId, cell);
+                    }
+                    break;
+                case ERASED:
+                    visitor.erased(payload.getLong());
+                    break;
+                default:
+                    buffer.position(start);
+                    return;
+            }
+        }
+    }
+
+    void group(long id, long deadline, int attempt, long notBefore) throws IOException {
+        record.clear();
+        record.put(GROUP).putLong(id).putLong(deadline).putInt(attempt).putLong(notBefore);
+        append();
+    }
+
+    void cell(long groupId, Cell cell) throws IOException {
+        record.clear();
+        record.put(CELL).putLong(groupId);
+        putString(cell.attribute.table);
+        putString(cell.attribute.attribute);
+        putString(cell.key);
+        record.putLong(cell.insertionTime);
+        append();
+    }
+
+    void erased(long groupId) throws IOException {
+        record.clear();
+        record.put(ERASED).putLong(groupId);
+        append();
+    }
+
+    private void putString(String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer payload) {
+        var bytes = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void append() throws IOException {
+        record.flip();
+        crc.reset();
+        crc.update(record.duplicate());
+        // one free header stays behind every record, it ends the log
+        if (buffer.remaining() < HEADER + record.remaining() + HEADER) {
+            if (buffer.capacity() == Integer.MAX_VALUE) {
+                throw new IOException("schedule log is full");
+            }
+            var position = buffer.position();
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(Integer.MAX_VALUE, buffer.capacity() * 2L));
+            buffer.position(position);
+        }
+        buffer.putInt(record.remaining()).putInt((int) crc.getValue()).put(record);
+        // clears what is left of a record that was dropped by the replay
+        buffer.putInt(buffer.position(), 0);
+    }
+
+    // bytes of the records
+    long size() {
+        return buffer.position();
+    }
+
+    // writes the mapped pages to the disk, the page cache keeps them when only the process crashes
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
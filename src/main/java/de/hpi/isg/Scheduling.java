@@ -3,6 +3,7 @@ package de.hpi.isg;
 import de.hpi.isg.RelationalDependencyRules.Attribute;
 import de.hpi.isg.RelationalDependencyRules.Cell;
 import de.hpi.isg.RelationalDependencyRules.Rule;
+import com.gurobi.gurobi.GRBException;
 import org.apache.commons.csv.CSVFormat;
 
 import java.nio.file.Files;
@@ -76,7 +77,8 @@ public class Scheduling {
         return bestTs;
     }
 
-    private static long constructScheduleWithGraceMaxOverlap(ArrayList<Cell> dependentValues, long gracePeriod, long start, long end, HashSet<Pair> pairs, HashMap<Long, HashSet<Pair>> deletionSchedule) {
+    // the maxOverlap windows one after the other, for intervals in any order
+    private static long scanScheduleWithGraceMaxOverlap(ArrayList<Cell> dependentValues, long gracePeriod, long start, long end, HashSet<Pair> pairs, HashMap<Long, HashSet<Pair>> deletionSchedule) {
         var curr = start;
         for (var cell : dependentValues) {
             pairs.add(new Pair(cell.insertionTime, true, cell.insertionTime + gracePeriod, cell));
@@ -92,10 +94,169 @@ public class Scheduling {
         return deletionSchedule.size() + pairs.size();
     }
 
+    interface ScheduleConsumer {
+        void accept(long timestamp, int from, int to);
+    }
+
+    // insertion times in ascending order, grouped once for the sweeps of all grace periods
+    static final class SortedTimes {
+        final long[] times;
+        // distinct times, group k holds times[groupStart[k]] until times[groupStart[k + 1]]
+        final int[] groupStart;
+        final int numGroups;
+
+        SortedTimes(ArrayList<Cell> dependentValues) {
+            times = new long[dependentValues.size()];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = dependentValues.get(i).insertionTime;
+            }
+            groupStart = new int[times.length + 1];
+            int group = 0;
+            for (int i = 0; i < times.length; i++) {
+                if (i == 0 || times[i] != times[i - 1]) {
+                    groupStart[group++] = i;
+                }
+            }
+            groupStart[group] = times.length;
+            numGroups = group;
+        }
+    }
+
+    // the schedule of the maxOverlap windows in one pass over insertion times in ascending order
+    // intervals that start before an erasure time and are not erased with it are never applicable again,
+    // so the applicable intervals of a window are always the times after the last erasure time up to the end of the window
+    // every window passes its erasure time and the erased times from until to, a window without intervals passes its end and an empty range
+    static void sweepMaxOverlap(SortedTimes sorted, long gracePeriod, long start, long end, ScheduleConsumer consumer) {
+        var times = sorted.times;
+        var groupStart = sorted.groupStart;
+        var numGroups = sorted.numGroups;
+        // the maxOverlap count at the time of group k are the intervals that start after its time minus the grace period
+        // as long as none of them is before the applicable ones
+        var overlapStart = new int[numGroups];
+        for (int k = 0, i = 0; k < numGroups; k++) {
+            var time = times[groupStart[k]];
+            while (i < times.length && times[i] <= time - gracePeriod) {
+                i++;
+            }
+            overlapStart[k] = i;
+        }
+
+        // groups with their full count, decreasing counts from head to tail, so the head is the earliest maximum
+        var window = new int[numGroups];
+        int head = 0, tail = 0;
+        // applicable groups are lo until hi, groups from full on are in the window
+        int lo = 0;
+        while (lo < numGroups && times[groupStart[lo]] < start) {
+            lo++;
+        }
+        int hi = lo, full = lo;
+
+        var curr = start;
+        while (curr < end - baseFrequence) {
+            var maxTime = curr + baseFrequence;
+            while (hi < numGroups && times[groupStart[hi]] <= maxTime) {
+                var count = groupStart[hi + 1] - overlapStart[hi];
+                while (tail > head && groupStart[window[tail - 1] + 1] - overlapStart[window[tail - 1]] < count) {
+                    tail--;
+                }
+                window[tail++] = hi++;
+            }
+            if (lo == hi) {
+                consumer.accept(maxTime, groupStart[lo], groupStart[lo]);
+                curr = maxTime;
+                continue;
+            }
+
+            int best;
+            if (gracePeriod == 0) {
+                // an interval ends right after it starts, so the first one keeps the maximum of one
+                best = lo;
+            } else {
+                full = Math.max(full, lo);
+                while (full < hi && overlapStart[full] < groupStart[lo]) {
+                    full++;
+                }
+                while (head < tail && window[head] < full) {
+                    head++;
+                }
+                // before full the count is the number of applicable intervals up to the group, which grows with every group
+                best = full > lo ? full - 1 : window[head];
+                if (full > lo && head < tail && groupStart[window[head] + 1] - overlapStart[window[head]] > groupStart[full] - groupStart[lo]) {
+                    best = window[head];
+                }
+            }
+
+            var bestTs = times[groupStart[best]];
+            int from = groupStart[lo];
+            while (times[from] < bestTs - gracePeriod) {
+                from++;
+            }
+            consumer.accept(bestTs, from, groupStart[best + 1]);
+            lo = best + 1;
+            curr = bestTs;
+        }
+    }
+
+    private static boolean isSorted(ArrayList<Cell> dependentValues) {
+        for (int i = 1; i < dependentValues.size(); i++) {
+            if (dependentValues.get(i - 1).insertionTime > dependentValues.get(i).insertionTime) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long constructScheduleWithGraceMaxOverlap(ArrayList<Cell> dependentValues, long gracePeriod, long start, long end, HashSet<Pair> pairs, HashMap<Long, HashSet<Pair>> deletionSchedule) {
+        // maxOverlap stops at the first interval after the window, which only means all later intervals for sorted ones
+        if (!pairs.isEmpty() || !isSorted(dependentValues)) {
+            return scanScheduleWithGraceMaxOverlap(dependentValues, gracePeriod, start, end, pairs, deletionSchedule);
+        }
+        var intervals = new Pair[dependentValues.size()];
+        for (int i = 0; i < intervals.length; i++) {
+            var cell = dependentValues.get(i);
+            intervals[i] = new Pair(cell.insertionTime, true, cell.insertionTime + gracePeriod, cell);
+        }
+        var erased = new boolean[intervals.length];
+        sweepMaxOverlap(new SortedTimes(dependentValues), gracePeriod, start, end, (timestamp, from, to) -> {
+            var depSet = new HashSet<Pair>();
+            for (int i = from; i < to; i++) {
+                depSet.add(intervals[i]);
+                erased[i] = true;
+            }
+            deletionSchedule.put(timestamp, depSet);
+        });
+        for (int i = 0; i < intervals.length; i++) {
+            if (!erased[i]) {
+                pairs.add(intervals[i]);
+            }
+        }
+        return deletionSchedule.size() + pairs.size();
+    }
+
     private static long constructScheduleWithGraceMaxOverlap(ArrayList<Cell> dependentValues, long gracePeriod, long start, long end) {
-        HashMap<Long, HashSet<Pair>> deletionSchedule = new HashMap<>();
-        HashSet<Pair> pairs = new LinkedHashSet<>();
-        return constructScheduleWithGraceMaxOverlap(dependentValues, gracePeriod, start, end, pairs, deletionSchedule);
+        if (!isSorted(dependentValues)) {
+            return scanScheduleWithGraceMaxOverlap(dependentValues, gracePeriod, start, end, new LinkedHashSet<>(), new HashMap<>());
+        }
+        return constructSchedulesWithGraceMaxOverlap(dependentValues, new long[]{gracePeriod}, start, end)[0];
+    }
+
+    // erasure times plus intervals that are never erased for every grace period, without building the schedules
+    // the dependent values have to be sorted by insertion time
+    static long[] constructSchedulesWithGraceMaxOverlap(ArrayList<Cell> dependentValues, long[] gracePeriods, long start, long end) {
+        var sorted = new SortedTimes(dependentValues);
+        var reconstructions = new long[gracePeriods.length];
+        // erasure times and erased intervals
+        var counts = new long[2];
+        for (int i = 0; i < gracePeriods.length; i++) {
+            counts[0] = 0;
+            counts[1] = 0;
+            sweepMaxOverlap(sorted, gracePeriods[i], start, end, (timestamp, from, to) -> {
+                counts[0]++;
+                counts[1] += to - from;
+            });
+            reconstructions[i] = counts[0] + dependentValues.size() - counts[1];
+        }
+        return reconstructions;
     }
 
     public static long baseReconstructions(ArrayList<Cell> dependentValues, long start, long end) {
@@ -116,31 +277,53 @@ public class Scheduling {
         return reconstructions;
     }
 
+    // completed children per derived cell, with all derived cells and children completed in bulk
+    private static ArrayList<ArrayList<Cell>> collectDependentValues(Instatiator instatiator, Rule rule, ArrayList<Cell> cells) throws SQLException {
+        instatiator.completeCells(cells);
+
+        var allDependentValues = new ArrayList<ArrayList<Cell>>(cells.size());
+        var allChildren = new ArrayList<Cell>();
+        for (var cell : cells) {
+            var dependentValues = new ArrayList<Cell>();
+            try (var rs = instatiator.queryRule(rule, cell, cell.insertionTime)) {
+                for (var edge : instatiator.resultSetToCellList(rule, cell, rs, cell.insertionTime)) {
+                    dependentValues.addAll(edge);
+                }
+            }
+            allChildren.addAll(dependentValues);
+            allDependentValues.add(dependentValues);
+        }
+        instatiator.completeCells(allChildren);
+        return allDependentValues;
+    }
+
     public static void scheduleExperiment(Instatiator instatiator) throws Exception {
+        var gracePeriods = new long[24];
+        for (int i = 0; i < gracePeriods.length; i++) {
+            gracePeriods[i] = i * ConfigParameter.baseFrequency;
+        }
         for (var rule : derivedData) {
-            long[] reconstructions = new long[25];
-             var keys = instatiator.getKeys(rule.head);
+            var keys = instatiator.getKeys(rule.head);
 
+            var cells = new ArrayList<Cell>(keys.size());
             for (var key : keys) {
-                var dependentValues = new ArrayList<Cell>();
-                var cell = new Cell(rule.head, key);
-                instatiator.completeCell(cell);
-
-                try (var rs = instatiator.queryRule(rule, cell, cell.insertionTime)) {
-                    for (var edge : instatiator.resultSetToCellList(rule, cell, rs, cell.insertionTime)) {
-                        for (var child : edge) {
-                            dependentValues.add(instatiator.completeCell(child));
-                        }
-                    }
-                }
-                Collections.sort(dependentValues);
+                cells.add(new Cell(rule.head, key));
+            }
+            var allDependentValues = collectDependentValues(instatiator, rule, cells);
 
-                reconstructions[0] += baseReconstructions(dependentValues, ConfigParameter.startSchedule, ConfigParameter.endSchedule);
-                for (int i = 0; i < 24; i++) {
-                    // reconstructions[i + 1] += constructScheduleWithGraceMaxOverlap(dependentValues, i * 3600000L, start, end);
-                    reconstructions[i + 1] += constructScheduleWithGraceMaxOverlap(dependentValues, i * ConfigParameter.baseFrequency, ConfigParameter.startSchedule, ConfigParameter.endSchedule);
+            // keys are independent, every thread sums its keys into its own array and the arrays are added up at the end
+            long[] reconstructions = allDependentValues.parallelStream().collect(() -> new long[gracePeriods.length + 1], (sums, dependentValues) -> {
+                Collections.sort(dependentValues);
+                sums[0] += baseReconstructions(dependentValues, ConfigParameter.startSchedule, ConfigParameter.endSchedule);
+                var counts = constructSchedulesWithGraceMaxOverlap(dependentValues, gracePeriods, ConfigParameter.startSchedule, ConfigParameter.endSchedule);
+                for (int i = 0; i < counts.length; i++) {
+                    sums[i + 1] += counts[i];
                 }
-            }
+            }, (sums, other) -> {
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += other[i];
+                }
+            });
             System.out.println("base," + reconstructions[0]);
             for (int i = 1; i < reconstructions.length; i++) {
                 System.out.println((i - 1) + "," + reconstructions[i]);
@@ -163,23 +346,20 @@ public class Scheduling {
         var keys = instatiator.getKeys(derivedData.get(0).head);
         HashMap<String, ArrayList<Cell>> key2Cell = new HashMap<>();
         for (var rule : derivedData) {
+            var cells = new ArrayList<Cell>(keys.size());
             for (var key : keys) {
-                var dependentValues = new ArrayList<Cell>();
-                var cell = new Cell(rule.head, key);
-                instatiator.completeCell(cell);
-                key2Cell.computeIfAbsent(key, a -> new ArrayList<>()).add(cell);
-
-                try (var rs = instatiator.queryRule(rule, cell, cell.insertionTime)) {
-                    for (var edge : instatiator.resultSetToCellList(rule, cell, rs, cell.insertionTime)) {
-                        for (var child : edge) {
-                            instatiator.completeCell(child);
-                            // delete before it "expires"
-//                             var delTime = (random.nextInt((int) ((child.insertionTime - start) / 1000))) * 1000L;
-                            var delTime = random.nextInt((int) (child.insertionTime - start));
-                            randomDeletionTime.put(child, start + delTime);
-                            dependentValues.add(child);
-                        }
-                    }
+                cells.add(new Cell(rule.head, key));
+            }
+            var allDependentValues = collectDependentValues(instatiator, rule, cells);
+            for (int keyIdx = 0; keyIdx < keys.size(); keyIdx++) {
+                var cell = cells.get(keyIdx);
+                var dependentValues = allDependentValues.get(keyIdx);
+                key2Cell.computeIfAbsent(keys.get(keyIdx), a -> new ArrayList<>()).add(cell);
+                for (var child : dependentValues) {
+                    // delete before it "expires"
+//                     var delTime = (random.nextInt((int) ((child.insertionTime - start) / 1000))) * 1000L;
+                    var delTime = random.nextInt((int) (child.insertionTime - start));
+                    randomDeletionTime.put(child, start + delTime);
                 }
                 Collections.sort(dependentValues);
                 derivedData2BaseData.put(cell, dependentValues);
@@ -250,13 +430,15 @@ public class Scheduling {
             var batchStart = start;
             ArrayList<Cell> batch = new ArrayList<>();
             retentionAwareInstantiator.retentionCells = retentionKeyCellSet;
+            // both instantiators feed the same model, edges that one of them drops are relaxed for its batches
+            var incrementalIlp = ConfigParameter.incrementalIlp ? new IncrementalIlp() : null;
             while (currRetentionTime != -1 || currDemandTime != -1) {
                 if (currRetentionTime != -1 && (currRetentionTime <= currDemandTime || currDemandTime == -1)) {
                     // process retention driven erasures
                     curr = currRetentionTime;
                     if (curr - batchStart >= gracePeriod) {
                         var model = new InstantiatedModel(batch, retentionAwareInstantiator);
-                        deletedCells += batchedOptimalDelete(model, batch).size();
+                        deletedCells += deleteBatch(model, batch, incrementalIlp);
                         batch.clear();
                         batchStart = curr;
                     }
@@ -273,7 +455,7 @@ public class Scheduling {
                     curr = currDemandTime;
                     if (curr - batchStart >= gracePeriod) {
                         var model = new InstantiatedModel(batch, instatiator);
-                        deletedCells += batchedOptimalDelete(model, batch).size();
+                        deletedCells += deleteBatch(model, batch, incrementalIlp);
                         batch.clear();
                         batchStart = curr;
                     }
@@ -285,6 +467,9 @@ public class Scheduling {
                     }
                 }
             }
+            if (incrementalIlp != null) {
+                incrementalIlp.dispose();
+            }
             System.out.println(retentionDrivenShare + "," + reconstructions + "," + deletedCells);
             reconstructions = 0;
             deletedCells = 0;
@@ -292,6 +477,13 @@ public class Scheduling {
     }
 
 
+    private static long deleteBatch(InstantiatedModel model, ArrayList<Cell> batch, IncrementalIlp incrementalIlp) throws GRBException {
+        if (incrementalIlp == null) {
+            return batchedOptimalDelete(model, batch).size();
+        }
+        return incrementalIlp.solve(model, batch).size();
+    }
+
     static class RetentionAwareInstantiator extends Instatiator {
 
         HashSet<Cell> retentionCells;
@@ -305,18 +497,31 @@ public class Scheduling {
             for (var rule : connectedRules.getOrDefault(start.attribute, EMPTY_LIST)) {
                 try (var rs = queryRule(rule, start, sourceInsertionTime)) {
                     var edges = resultSetToCellList(rule, start, rs, sourceInsertionTime);
-                    var edgeIter = edges.iterator();
-                    while (edgeIter.hasNext()) {
-                        for (var cell : edgeIter.next()) {
-                            if (retentionCells.contains(cell)) {
-                                edgeIter.remove();
-                                break;
-                            }
-                        }
-                    }
+                    removeRetentionEdges(edges);
                     result.addAll(edges);
                 }
             }
         }
+
+        @Override
+        public HashMap<Cell, ArrayList<Cell.HyperEdge>> instantiateAttachedCells(Collection<Cell> cells, long sourceInsertionTime) throws SQLException {
+            var result = super.instantiateAttachedCells(cells, sourceInsertionTime);
+            for (var edges : result.values()) {
+                removeRetentionEdges(edges);
+            }
+            return result;
+        }
+
+        private void removeRetentionEdges(ArrayList<Cell.HyperEdge> edges) {
+            var edgeIter = edges.iterator();
+            while (edgeIter.hasNext()) {
+                for (var cell : edgeIter.next()) {
+                    if (retentionCells.contains(cell)) {
+                        edgeIter.remove();
+                        break;
+                    }
+                }
+            }
+        }
     }
 }
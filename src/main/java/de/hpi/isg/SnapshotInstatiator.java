@@ -0,0 +1,74 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Cell;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.sql.SQLException;
+import java.util.*;
+
+// evaluates the rules on a columnar snapshot of the database instead of sending a join per lookup
+// rules whose condition the snapshot cannot evaluate are still sent to the database
+public class SnapshotInstatiator extends Instatiator {
+    final ColumnarSnapshot snapshot;
+    final HashMap<Rule, SnapshotRule> compiledRules = new HashMap<>();
+    final long loadTime;
+
+    public SnapshotInstatiator(HashMap<Attribute, ArrayList<Rule>> attributeInHead, HashMap<Attribute, ArrayList<Rule>> attributeInTail, HashMap<String, String> tableName2keyCol) throws SQLException {
+        super(attributeInHead, attributeInTail, tableName2keyCol);
+        var start = System.nanoTime();
+        var rules = new LinkedHashSet<Rule>();
+        attributeInHead.values().forEach(rules::addAll);
+        attributeInTail.values().forEach(rules::addAll);
+        snapshot = ColumnarSnapshot.load(c, rules, tableName2keyCol);
+        c.commit();
+        for (var rule : rules) {
+            var compiled = SnapshotRule.compile(rule, snapshot);
+            if (compiled != null) {
+                compiledRules.put(rule, compiled);
+            }
+        }
+        loadTime = System.nanoTime() - start;
+    }
+
+    @Override
+    void instantiateRule(Rule rule, Cell start, long sourceInsertionTime, ArrayList<HyperEdge> result) throws SQLException {
+        var compiled = compiledRules.get(rule);
+        if (compiled == null) {
+            super.instantiateRule(rule, start, sourceInsertionTime, result);
+            return;
+        }
+        compiled.evaluate(start.attribute, start.key, sourceInsertionTime, false, result::add);
+    }
+
+    @Override
+    void instantiateRule(Rule rule, Attribute attribute, List<String> keys, HashMap<String, ArrayList<Cell>> key2Cells, long sourceInsertionTime, HashMap<Cell, ArrayList<HyperEdge>> result, boolean raw) throws SQLException {
+        var compiled = compiledRules.get(rule);
+        if (compiled == null) {
+            super.instantiateRule(rule, attribute, keys, key2Cells, sourceInsertionTime, result, raw);
+            return;
+        }
+        for (var key : keys) {
+            var starts = key2Cells.get(key);
+            compiled.evaluate(attribute, key, sourceInsertionTime, raw, edge -> addEdge(edge, starts, result));
+        }
+    }
+
+    @Override
+    public long deleteCells(HashSet<Cell> toDelete) throws SQLException {
+        var time = super.deleteCells(toDelete);
+        for (var cell : toDelete) {
+            snapshot.update(cell, null);
+        }
+        return time;
+    }
+
+    @Override
+    public void resetValues(Collection<Cell> cells) throws SQLException {
+        super.resetValues(cells);
+        for (var cell : cells) {
+            snapshot.update(cell, cell.value);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Attribute;
+import de.hpi.isg.RelationalDependencyRules.Cell.HyperEdge;
+import de.hpi.isg.RelationalDependencyRules.Rule;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// a rule evaluated on a ColumnarSnapshot, the same join as the query of Instatiator.ruleToQuery
+// conditions are conjunctions of comparisons between columns and literals and IS [NOT] NULL, compile returns null for anything else
+// text is only compared with text by = and <>, numbers with numbers, everything else is left to the collation and casts of the database
+final class SnapshotRule {
+    private static final Pattern TOKEN = Pattern.compile("\\s*(?:(-?\\d+(?:\\.\\d+)?)|(\\w+\\.\\w+)|('(?:[^']|'')*')|(<>|!=|<=|>=|=|<|>)|(\\w+))");
+
+    private static final class Operand {
+        // -1 for literals
+        final int tableIdx;
+        final int[] codes;
+        final String literal;
+        final double number;
+        // ColumnarSnapshot.TEXT, INTEGER, DECIMAL or OTHER
+        final int kind;
+
+        Operand(int tableIdx, int[] codes, int kind) {
+            this.tableIdx = tableIdx;
+            this.codes = codes;
+            this.literal = null;
+            this.number = Double.NaN;
+            this.kind = kind;
+        }
+
+        Operand(String literal, int kind) {
+            this.tableIdx = -1;
+            this.codes = null;
+            this.literal = literal;
+            this.number = ColumnarSnapshot.parseNumber(literal);
+            this.kind = kind;
+        }
+
+        boolean isNumber() {
+            return kind == ColumnarSnapshot.INTEGER || kind == ColumnarSnapshot.DECIMAL;
+        }
+    }
+
+    private static final class Predicate {
+        final String op;
+        final Operand left;
+        final Operand right;
+
+        Predicate(String op, Operand left, Operand right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    // binds one table, either by probing the join index with a column of a bound table or by scanning it
+    private static final class Step {
+        final int tableIdx;
+        final String probeColumn;
+        final Operand probeWith;
+        final ArrayList<Predicate> checks = new ArrayList<>();
+
+        Step(int tableIdx, String probeColumn, Operand probeWith) {
+            this.tableIdx = tableIdx;
+            this.probeColumn = probeColumn;
+            this.probeWith = probeWith;
+        }
+    }
+
+    private final Rule rule;
+    private final ColumnarSnapshot snapshot;
+    private final ColumnarSnapshot.Table[] tables;
+    private final ArrayList<Predicate> predicates = new ArrayList<>();
+    // the columns of the equi joins, parallel to the predicates
+    private final ArrayList<String[]> joinColumns = new ArrayList<>();
+    // index 0 is the head, the tail follows, like the columns of the rule query
+    private final int[] attributeTable;
+    private final int[][] attributeCodes;
+    private final long[][] attributeTimes;
+    // identifier table -> plan
+    private final HashMap<String, Step[]> plans = new HashMap<>();
+
+    private SnapshotRule(Rule rule, ColumnarSnapshot snapshot) {
+        this.rule = rule;
+        this.snapshot = snapshot;
+        tables = new ColumnarSnapshot.Table[rule.tables.size()];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = snapshot.tables.get(rule.tables.get(i));
+        }
+        attributeTable = new int[rule.tail.size() + 1];
+        attributeCodes = new int[attributeTable.length][];
+        attributeTimes = new long[attributeTable.length][];
+        for (int i = 0; i < attributeTable.length; i++) {
+            var attribute = i == 0 ? rule.head : rule.tail.get(i - 1);
+            attributeTable[i] = rule.tables.indexOf(attribute.table);
+            attributeCodes[i] = tables[attributeTable[i]].columns.get(attribute.attribute);
+            attributeTimes[i] = tables[attributeTable[i]].insertionTimes.get(attribute.attribute);
+        }
+    }
+
+    static SnapshotRule compile(Rule rule, ColumnarSnapshot snapshot) {
+        for (var table : rule.tables) {
+            if (!snapshot.tables.containsKey(table)) {
+                return null;
+            }
+        }
+        var compiled = new SnapshotRule(rule, snapshot);
+        return compiled.parseCondition() ? compiled : null;
+    }
+
+    private boolean parseCondition() {
+        if (rule.condition == null || rule.condition.isBlank()) {
+            return true;
+        }
+        var tokens = new ArrayList<String>();
+        var matcher = TOKEN.matcher(rule.condition);
+        int end = 0;
+        while (end < rule.condition.length() && matcher.find(end) && matcher.start() == end && matcher.end() > end) {
+            tokens.add(rule.condition.substring(matcher.start(), matcher.end()).trim());
+            end = matcher.end();
+        }
+        if (!rule.condition.substring(end).isBlank()) {
+            return false;
+        }
+
+        int pos = 0;
+        while (pos < tokens.size()) {
+            if (tokens.get(pos).equalsIgnoreCase("true")) {
+                pos++;
+            } else if (pos + 2 < tokens.size() && tokens.get(pos + 1).equalsIgnoreCase("is")) {
+                var operand = operand(tokens.get(pos));
+                var negated = tokens.get(pos + 2).equalsIgnoreCase("not");
+                var nullIdx = pos + (negated ? 3 : 2);
+                if (operand == null || nullIdx >= tokens.size() || !tokens.get(nullIdx).equalsIgnoreCase("null")) {
+                    return false;
+                }
+                predicates.add(new Predicate(negated ? "is not null" : "is null", operand, null));
+                joinColumns.add(null);
+                pos = nullIdx + 1;
+            } else if (pos + 2 < tokens.size() && tokens.get(pos + 1).matches("<>|!=|<=|>=|=|<|>")) {
+                var left = operand(tokens.get(pos));
+                var right = operand(tokens.get(pos + 2));
+                var op = tokens.get(pos + 1).equals("!=") ? "<>" : tokens.get(pos + 1);
+                if (left == null || right == null || !comparable(left, right, op)) {
+                    return false;
+                }
+                predicates.add(new Predicate(op, left, right));
+                // the join index matches codes, which only stand for equal values within text or within integers
+                joinColumns.add(op.equals("=") && left.tableIdx >= 0 && right.tableIdx >= 0 && left.kind == right.kind && left.kind != ColumnarSnapshot.DECIMAL
+                        ? new String[]{column(tokens.get(pos)), column(tokens.get(pos + 2))} : null);
+                pos += 3;
+            } else {
+                return false;
+            }
+            if (pos < tokens.size()) {
+                if (!tokens.get(pos).equalsIgnoreCase("and")) {
+                    return false;
+                }
+                pos++;
+                if (pos == tokens.size()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean comparable(Operand left, Operand right, String op) {
+        if (left.kind == ColumnarSnapshot.TEXT && right.kind == ColumnarSnapshot.TEXT) {
+            return op.equals("=") || op.equals("<>");
+        }
+        return left.isNumber() && right.isNumber();
+    }
+
+    private static String column(String token) {
+        return token.substring(token.indexOf('.') + 1);
+    }
+
+    private Operand operand(String token) {
+        if (token.startsWith("'")) {
+            return new Operand(token.substring(1, token.length() - 1).replace("''", "'"), ColumnarSnapshot.TEXT);
+        }
+        if (!Double.isNaN(ColumnarSnapshot.parseNumber(token))) {
+            return new Operand(token, ColumnarSnapshot.DECIMAL);
+        }
+        var dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        var tableIdx = rule.tables.indexOf(rule.table2Alias.get(token.substring(0, dot)));
+        if (tableIdx < 0) {
+            return null;
+        }
+        var column = token.substring(dot + 1);
+        var codes = tables[tableIdx].columns.get(column);
+        return codes == null ? null : new Operand(tableIdx, codes, tables[tableIdx].kinds.get(column));
+    }
+
+    private Step[] plan(String identifierTable) {
+        var steps = plans.get(identifierTable);
+        if (steps != null) {
+            return steps;
+        }
+        steps = new Step[tables.length];
+        var bound = new boolean[tables.length];
+        var checked = new boolean[predicates.size()];
+        for (int stepIdx = 0; stepIdx < steps.length; stepIdx++) {
+            if (stepIdx == 0) {
+                steps[0] = new Step(rule.tables.indexOf(identifierTable), null, null);
+            } else {
+                // prefer a hash join over a scan
+                for (int i = 0; i < predicates.size() && steps[stepIdx] == null; i++) {
+                    var columns = joinColumns.get(i);
+                    if (columns == null) {
+                        continue;
+                    }
+                    var predicate = predicates.get(i);
+                    if (bound[predicate.left.tableIdx] && !bound[predicate.right.tableIdx]) {
+                        steps[stepIdx] = new Step(predicate.right.tableIdx, columns[1], predicate.left);
+                    } else if (bound[predicate.right.tableIdx] && !bound[predicate.left.tableIdx]) {
+                        steps[stepIdx] = new Step(predicate.left.tableIdx, columns[0], predicate.right);
+                    }
+                }
+                for (int tableIdx = 0; tableIdx < tables.length && steps[stepIdx] == null; tableIdx++) {
+                    if (!bound[tableIdx]) {
+                        steps[stepIdx] = new Step(tableIdx, null, null);
+                    }
+                }
+            }
+            bound[steps[stepIdx].tableIdx] = true;
+            // every predicate is checked as soon as its tables are bound
+            for (int i = 0; i < predicates.size(); i++) {
+                var predicate = predicates.get(i);
+                if (!checked[i] && isBound(predicate.left, bound) && (predicate.right == null || isBound(predicate.right, bound))) {
+                    steps[stepIdx].checks.add(predicate);
+                    checked[i] = true;
+                }
+            }
+        }
+        plans.put(identifierTable, steps);
+        return steps;
+    }
+
+    private static boolean isBound(Operand operand, boolean[] bound) {
+        return operand.tableIdx < 0 || bound[operand.tableIdx];
+    }
+
+    // the edges of one identifying row, with the same filters and the same edges as the rule query and Instatiator.rowToEdge
+    void evaluate(Attribute identifier, String key, long sourceInsertionTime, boolean raw, Consumer<HyperEdge> out) {
+        var steps = plan(identifier.table);
+        var rows = new int[tables.length];
+        rows[steps[0].tableIdx] = tables[steps[0].tableIdx].row(key);
+        if (rows[steps[0].tableIdx] < 0 || !check(steps[0], rows)) {
+            return;
+        }
+        bind(steps, 1, rows, rule.head.equals(identifier), sourceInsertionTime, raw, out);
+    }
+
+    private void bind(Step[] steps, int stepIdx, int[] rows, boolean isHead, long sourceInsertionTime, boolean raw, Consumer<HyperEdge> out) {
+        if (stepIdx == steps.length) {
+            emit(rows, isHead, sourceInsertionTime, raw, out);
+            return;
+        }
+        var step = steps[stepIdx];
+        var table = tables[step.tableIdx];
+        if (step.probeColumn != null) {
+            var code = step.probeWith.codes[rows[step.probeWith.tableIdx]];
+            var candidates = code == ColumnarSnapshot.NULL ? null : table.rowsWith(step.probeColumn, code);
+            if (candidates == null) {
+                return;
+            }
+            for (var row : candidates) {
+                rows[step.tableIdx] = row;
+                if (check(step, rows)) {
+                    bind(steps, stepIdx + 1, rows, isHead, sourceInsertionTime, raw, out);
+                }
+            }
+        } else {
+            for (int row = 0; row < table.rows; row++) {
+                rows[step.tableIdx] = row;
+                if (check(step, rows)) {
+                    bind(steps, stepIdx + 1, rows, isHead, sourceInsertionTime, raw, out);
+                }
+            }
+        }
+    }
+
+    private boolean check(Step step, int[] rows) {
+        for (var predicate : step.checks) {
+            if (!holds(predicate, rows)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // comparisons with null are false, like in sql
+    private boolean holds(Predicate predicate, int[] rows) {
+        var left = predicate.left;
+        var leftCode = left.tableIdx < 0 ? 0 : left.codes[rows[left.tableIdx]];
+        if (predicate.right == null) {
+            var isNull = left.tableIdx >= 0 && leftCode == ColumnarSnapshot.NULL;
+            return predicate.op.equals("is null") == isNull;
+        }
+        var right = predicate.right;
+        var rightCode = right.tableIdx < 0 ? 0 : right.codes[rows[right.tableIdx]];
+        if (leftCode == ColumnarSnapshot.NULL || rightCode == ColumnarSnapshot.NULL) {
+            return false;
+        }
+        if (left.tableIdx >= 0 && right.tableIdx >= 0 && leftCode == rightCode) {
+            return predicate.op.equals("=") || predicate.op.equals("<=") || predicate.op.equals(">=");
+        }
+        var leftValue = left.tableIdx < 0 ? left.literal : snapshot.value(leftCode);
+        var rightValue = right.tableIdx < 0 ? right.literal : snapshot.value(rightCode);
+        int cmp;
+        if (left.kind == ColumnarSnapshot.TEXT) {
+            cmp = leftValue.equals(rightValue) ? 0 : 1;
+        } else {
+            var leftNumber = left.tableIdx < 0 ? left.number : snapshot.number(leftCode);
+            var rightNumber = right.tableIdx < 0 ? right.number : snapshot.number(rightCode);
+            cmp = leftNumber < rightNumber ? -1 : leftNumber > rightNumber ? 1 : 0;
+            // doubles round long integers and decimals, values that only look equal as doubles are compared exactly
+            if (cmp == 0 && !leftValue.equals(rightValue) && Double.isFinite(leftNumber)) {
+                cmp = new BigDecimal(leftValue).compareTo(new BigDecimal(rightValue));
+            }
+        }
+        switch (predicate.op) {
+            case "=":
+                return cmp == 0;
+            case "<>":
+                return cmp != 0;
+            case "<":
+                return cmp < 0;
+            case "<=":
+                return cmp <= 0;
+            case ">":
+                return cmp > 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+
+    private void emit(int[] rows, boolean isHead, long sourceInsertionTime, boolean raw, Consumer<HyperEdge> out) {
+        var values = new String[attributeTable.length];
+        var insertionTimes = new long[attributeTable.length];
+        var anyLater = false;
+        for (int i = 0; i < attributeTable.length; i++) {
+            var row = rows[attributeTable[i]];
+            values[i] = snapshot.value(attributeCodes[i][row]);
+            insertionTimes[i] = attributeTimes[i][row];
+            anyLater |= insertionTimes[i] >= sourceInsertionTime;
+        }
+        if (!anyLater) {
+            return;
+        }
+        var keys = new String[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            keys[i] = tables[i].keys[rows[i]];
+        }
+        var edge = Instatiator.toEdge(rule, isHead, keys, values, insertionTimes, sourceInsertionTime, raw);
+        if (edge != null) {
+            out.accept(edge);
+        }
+    }
+}
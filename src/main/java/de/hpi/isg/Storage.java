@@ -0,0 +1,53 @@
+package de.hpi.isg;
+
+import de.hpi.isg.RelationalDependencyRules.Cell;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.*;
+import java.util.Collection;
+
+// the database specific parts of instantiating, completing, erasing, restoring and sampling cells
+// the backend follows from ConfigParameter.connectionUrl, jdbc:h2: urls run an embedded database in process
+public interface Storage {
+    static Storage fromConfig() {
+        if (ConfigParameter.connectionUrl.startsWith("jdbc:h2:")) {
+            return new H2Storage();
+        }
+        return new PostgresStorage();
+    }
+
+    Connection connect() throws SQLException;
+
+    // type name of a key column, keys are bound as strings and cast to this type
+    String keyType(Connection c, String table, String keyCol) throws SQLException;
+
+    // matches the column against the keys bound with keyArray
+    String anyKey(String column, String keyType);
+
+    Array keyArray(Connection c, Collection<String> keys) throws SQLException;
+
+    // binds a value of a restored cell
+    default void bindValue(PreparedStatement stmt, int idx, Cell cell) throws SQLException {
+        try {
+            stmt.setLong(idx, Long.parseLong(cell.value));
+        } catch (Exception e) {
+            try {
+                stmt.setFloat(idx, Float.parseFloat(cell.value));
+            } catch (Exception e2) {
+                stmt.setString(idx, cell.value);
+            }
+        }
+    }
+
+    // csv rows without a header that are appended to the table once the writer is closed
+    Writer bulkWriter(Connection c, String table) throws SQLException, IOException;
+
+    String analyze(String table);
+
+    // name of a table as it is stored in the catalog
+    String catalogName(String name);
+
+    // what the rows of EXPLAIN reveal about the cost of a query
+    String planCost(String plan);
+}
@@ -0,0 +1,141 @@
+package de.hpi.isg;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+// hierarchical timing wheel, a slot of level l spans tick * SLOTS^l ms
+// an entry is put into the lowest level whose slots reach its deadline and moves down one level whenever its slot comes up,
+// so scheduling and expiring cost O(1) per entry and level, independent of the number of pending entries
+// advancing jumps from one occupied slot to the next, so a long pause costs no more than the entries it expires
+final class TimingWheel<T> {
+    private static final int SLOTS = 64;
+    private static final int SLOT_BITS = 6;
+
+    private static final class Entry<T> {
+        final long deadline;
+        final T value;
+        Entry<T> next;
+
+        Entry(long deadline, T value) {
+            this.deadline = deadline;
+            this.value = value;
+        }
+    }
+
+    private final long tick;
+    // levels of SLOTS slots, every slot is a linked list of entries
+    private final ArrayList<Entry<T>[]> levels = new ArrayList<>();
+    // entries that were due when they were scheduled
+    private Entry<T> overdue;
+    // the current tick, deadline / tick of the entries that expire next
+    private long current;
+    private int size = 0;
+
+    TimingWheel(long tick, long now) {
+        this.tick = tick;
+        current = now / tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void schedule(long deadline, T value) {
+        size++;
+        add(new Entry<>(deadline, value));
+    }
+
+    private void add(Entry<T> entry) {
+        var ticks = entry.deadline / tick;
+        if (ticks <= current) {
+            entry.next = overdue;
+            overdue = entry;
+            return;
+        }
+        int level = 0;
+        while ((ticks >>> (level * SLOT_BITS)) - (current >>> (level * SLOT_BITS)) >= SLOTS) {
+            level++;
+        }
+        while (levels.size() <= level) {
+            levels.add(newSlots());
+        }
+        var slots = levels.get(level);
+        var slot = (int) ((ticks >>> (level * SLOT_BITS)) & (SLOTS - 1));
+        entry.next = slots[slot];
+        slots[slot] = entry;
+    }
+
+    // generic arrays cannot be created directly
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Entry<T>[] newSlots() {
+        return new Entry[SLOTS];
+    }
+
+    // hands every entry with a deadline up to now to due
+    void advance(long now, Consumer<T> due) {
+        var target = now / tick;
+        expire(takeOverdue(), due);
+        if (size == 0) {
+            current = Math.max(current, target);
+            return;
+        }
+        while (current < target) {
+            current = Math.min(target, nextTick());
+            // higher levels first, so that entries of this tick are in level 0 before it expires
+            for (int level = levels.size() - 1; level > 0; level--) {
+                if ((current & ((1L << (level * SLOT_BITS)) - 1)) == 0) {
+                    var slots = levels.get(level);
+                    var slot = (int) ((current >>> (level * SLOT_BITS)) & (SLOTS - 1));
+                    var entry = slots[slot];
+                    slots[slot] = null;
+                    while (entry != null) {
+                        var next = entry.next;
+                        add(entry);
+                        entry = next;
+                    }
+                }
+            }
+            var slots = levels.get(0);
+            var slot = (int) (current & (SLOTS - 1));
+            var entry = slots[slot];
+            slots[slot] = null;
+            expire(entry, due);
+            expire(takeOverdue(), due);
+            if (size == 0) {
+                current = target;
+            }
+        }
+    }
+
+    // the first tick after current at which a slot expires or moves down, Long.MAX_VALUE if every slot is empty
+    // an entry of level l lies 1 to SLOTS - 1 slots of that level ahead of current
+    private long nextTick() {
+        var next = Long.MAX_VALUE;
+        for (int level = 0; level < levels.size(); level++) {
+            var shift = level * SLOT_BITS;
+            var slots = levels.get(level);
+            var base = current >>> shift;
+            for (int i = 1; i < SLOTS; i++) {
+                if (slots[(int) ((base + i) & (SLOTS - 1))] != null) {
+                    next = Math.min(next, (base + i) << shift);
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    private Entry<T> takeOverdue() {
+        var entry = overdue;
+        overdue = null;
+        return entry;
+    }
+
+    private void expire(Entry<T> entry, Consumer<T> due) {
+        while (entry != null) {
+            size--;
+            due.accept(entry.value);
+            entry = entry.next;
+        }
+    }
+}
@@ -5,9 +5,32 @@ public class Utils {
     final static long[] optimalTimes = new long[5];
     final static long[] approximateTimes = new long[5];
     final static long[] ilpTimes = new long[5];
+    final static long[] branchAndBoundTimes = new long[5];
+    final static long[] lpTimes = new long[5];
+    // largest relative mip gap of the ilp solves since the last output
+    static double ilpGap = 0;
+    // sum of the lagrangian lower bounds and largest relative gap of the lp rounding solves since the last output
+    static double lpLowerBound = 0;
+    static double lpGap = 0;
 
     // deletions, instantiations, tree height, memory consumption
     final static long[] approximateCounts = new long[4];
     final static long[] optimalCounts = new long[4];
     final static long[] ilpCounts = new long[4];
+    final static long[] branchAndBoundCounts = new long[4];
+    final static long[] lpCounts = new long[4];
+
+    // the components of a batch are solved in parallel and add to the same counters
+    static synchronized void add(long[] counters, int idx, long value) {
+        counters[idx] += value;
+    }
+
+    static synchronized void addGap(double gap) {
+        ilpGap = Math.max(ilpGap, gap);
+    }
+
+    static synchronized void addLpBound(double lowerBound, int deletionSize) {
+        lpLowerBound += lowerBound;
+        lpGap = Math.max(lpGap, (deletionSize - lowerBound) / deletionSize);
+    }
 }